@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the threads that make blocking database calls.
+ *
+ * <p>This is the Java 8 implementation, which uses daemon platform threads. The connector jar is
+ * a multi-release jar, and on Java 21 and later this class is replaced by an implementation in
+ * {@code META-INF/versions/21} that uses virtual threads instead, so that many concurrent
+ * database waits do not each hold a platform thread and its stack. The two implementations must
+ * have the same methods.
+ */
+final class BlockingThreads {
+
+  private BlockingThreads() {
+  }
+
+  /**
+   * Creates an unstarted thread.
+   *
+   * @param name the thread name
+   * @param task the thread's task
+   * @return the new thread
+   */
+  static Thread newThread(String name, Runnable task) {
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * Creates an executor for blocking database calls.
+   *
+   * @param nameFormat the thread name format, with a {@code %d} for the thread number
+   * @param maxThreads the maximum number of tasks that run at the same time
+   * @return the new executor
+   */
+  static ExecutorService newExecutor(String nameFormat, int maxThreads) {
+    return Executors.newFixedThreadPool(maxThreads,
+        new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Decides which changed items incremental updates send now, and which they defer, so that
+ * frequently changed items are sent at most once per coalescing window.
+ *
+ * <p>When an item is sent, the time is recorded. If the item changes again before the window
+ * has passed, the change is deferred: the item is not sent, and the checkpoint is kept before
+ * the record (see {@link Checkpoint#deferRecord}), so that a later incremental update reads
+ * it again. The first incremental update after the window has passed sends the latest state of
+ * the item, so the final state is never lost.
+ *
+ * <p>The send times are kept in a {@link LongLruMap}, keyed by a hash of the item name. An item
+ * that has been evicted is sent right away.
+ *
+ * <p>Note: this class is thread safe.
+ */
+class ChangeCoalescer {
+  private final long windowMillis;
+  private final LongSupplier clock;
+  private final LongLruMap sendTimes;
+
+  /**
+   * @param windowMillis the minimum time between sending the same item
+   * @param capacity the maximum number of items whose send time is tracked
+   * @param clock the current time in milliseconds
+   */
+  ChangeCoalescer(long windowMillis, int capacity, LongSupplier clock) {
+    checkArgument(windowMillis > 0, "Window must be positive: %s", windowMillis);
+    this.windowMillis = windowMillis;
+    this.clock = checkNotNull(clock, "Clock cannot be null.");
+    this.sendTimes = new LongLruMap(capacity);
+  }
+
+  /**
+   * Checks whether a changed item was sent within the window. If not, the item is recorded as
+   * sent now.
+   *
+   * @param name the item name
+   * @return true if the change should be deferred
+   */
+  synchronized boolean isHot(String name) {
+    long id = RecentItemCache.hashName(name);
+    long now = clock.getAsLong();
+    if (sendTimes.containsKey(id) && now - sendTimes.get(id, now) < windowMillis) {
+      return true;
+    }
+    sendTimes.put(id, now);
+    return false;
+  }
+}
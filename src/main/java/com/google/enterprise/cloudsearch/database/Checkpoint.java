@@ -20,6 +20,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.google.api.client.json.GenericJson;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.util.Key;
 import com.google.enterprise.cloudsearch.sdk.RepositoryException;
 import java.io.IOException;
 import java.sql.PreparedStatement;
@@ -28,10 +29,21 @@ import java.util.Map;
 import java.util.TimeZone;
 import java.util.function.Supplier;
 
-/** Base class for checkpoints, with generic code for parsing and generating them. */
+/**
+ * Base class for checkpoints, with generic code for parsing and generating them.
+ *
+ * <p>Checkpoints are encoded as compact JSON with a format version. Checkpoints from earlier
+ * releases, which are pretty-printed JSON without a version, are parsed as version 1.
+ */
 abstract class Checkpoint extends GenericJson implements Supplier<byte[]> {
   private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
 
+  /** The current checkpoint format version. */
+  static final int FORMAT_VERSION = 1;
+
+  @Key("v")
+  private int formatVersion = FORMAT_VERSION;
+
   /**
    * Default constructor for Json parsing
    *
@@ -44,7 +56,7 @@ abstract class Checkpoint extends GenericJson implements Supplier<byte[]> {
   @Override
   public byte[] get() {
     try {
-      return this.toPrettyString().getBytes(UTF_8);
+      return JSON_FACTORY.toByteArray(this);
     } catch (IOException e) {
       throw new RuntimeException("error encoding checkpoint", e);
     }
@@ -56,14 +68,26 @@ abstract class Checkpoint extends GenericJson implements Supplier<byte[]> {
       return null;
     }
     String checkpoint = new String(payload, UTF_8);
+    T parsed;
     try {
-      return JSON_FACTORY.fromString(checkpoint, clazz);
+      parsed = JSON_FACTORY.fromString(checkpoint, clazz);
     } catch (IOException e) {
       throw new RepositoryException.Builder()
           .setErrorMessage("Error parsing checkpoint " + checkpoint + " as "
               + clazz.getSimpleName())
           .setCause(e).build();
     }
+    if (parsed.getFormatVersion() > FORMAT_VERSION) {
+      throw new RepositoryException.Builder()
+          .setErrorMessage("Unsupported checkpoint format version " + parsed.getFormatVersion()
+              + " in checkpoint " + checkpoint)
+          .build();
+    }
+    return parsed;
+  }
+
+  int getFormatVersion() {
+    return formatVersion;
   }
 
   public abstract void setParameters(PreparedStatement stmt, TimeZone timeZone)
@@ -76,4 +100,37 @@ abstract class Checkpoint extends GenericJson implements Supplier<byte[]> {
   public abstract void resetCheckpoint();
 
   public abstract boolean isPageable();
+
+  /**
+   * Whether a traversal can stop after any record and resume from this checkpoint, which
+   * allows intermediate checkpoints to be saved.
+   */
+  public abstract boolean isResumable();
+
+  /**
+   * Whether a traversal can stop before the given record, which is the next record in the
+   * result set, and resume from this checkpoint. This is only called for resumable checkpoints.
+   */
+  public boolean canResumeBefore(Map<String, Object> allColumnValues) {
+    return true;
+  }
+
+  /**
+   * Keeps this checkpoint before the given record, so that the record is read again by a later
+   * query, even if later records are returned.
+   *
+   * @return whether the record can be read again, or false if this checkpoint does not support it
+   */
+  public boolean deferRecord(Map<String, Object> allColumnValues) {
+    return false;
+  }
+
+  /**
+   * Called when every record from the query has been returned.
+   *
+   * @return whether there are more records to traverse with another query
+   */
+  public boolean completeQuery() {
+    return false;
+  }
 }
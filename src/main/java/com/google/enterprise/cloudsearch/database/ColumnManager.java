@@ -20,8 +20,15 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.enterprise.cloudsearch.sdk.InvalidConfigurationException;
 import com.google.enterprise.cloudsearch.sdk.config.Configuration;
 import com.google.enterprise.cloudsearch.sdk.config.Configuration.Parser;
@@ -39,6 +46,7 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * Manager of configuration file column definitions.
@@ -60,6 +68,13 @@ import java.util.logging.Logger;
  *
  * <p>Optional configuration parameters:
  * <ul>
+ *   <li>"{@value #DB_UNIQUE_KEY_FORMAT}" - The format of the item names. The default is
+ *   "{@value UniqueIdFormat#KEY}", which uses the encoded unique key column values. Use
+ *   "{@value UniqueIdFormat#HASH}" for a 22 character hash of the unique key instead, when the
+ *   unique key values are long. Hashed items store the encoded unique key in the item payload.
+ *   Changing the format changes the name of every item, so the items are indexed again under
+ *   the new names, and the items with the old names must be deleted, for example by a full
+ *   traversal that detects deleted items.
  *   <li>"{@value #DB_PAGINATION}" - The pagination style of the provided
  *   {@value #DB_ALL_RECORDS_SQL} query. The default is "{@value Pagination#NONE}". Use
  *   "{@value Pagination#OFFSET}" if the query has a SQL parameter for a row offset.
@@ -67,7 +82,56 @@ import java.util.logging.Logger;
  *   retrieve database record content and used for content hash that will be used to determine if
  *   the data has been modified.
  *   <li>"{@value #DB_INC_UPDATE_SQL}" - Incremental update query to retrieve recently changed
- *   documents usually by their timestamp.
+ *   documents usually by their timestamp. If the query selects a column named
+ *   {@value #SEQUENCE_COLUMN}, the checkpoint is the largest value of that column instead, which
+ *   must be an integer or a binary value of up to 8 bytes (such as a SQL Server
+ *   {@code rowversion}) that increases with every change. The place holder is set to the value
+ *   as a {@code BIGINT}.
+ *   <li>"{@value #DB_INC_UPDATE_START_SEQUENCE_SQL}" - A query for the largest value of the
+ *   {@value #SEQUENCE_COLUMN} when the connector starts, selected as {@value #SEQUENCE_COLUMN}
+ *   (e.g. {@code select max(rowver) as sequence_column from ...}). The first incremental update
+ *   after a start without a checkpoint reads the records changed after this value, in the same
+ *   way that a timestamp query starts from the connector start time. This is required if the
+ *   incremental update query selects {@value #SEQUENCE_COLUMN}.
+ *   <li>"{@value #DB_INC_UPDATE_BATCH_SIZE}" - The number of records after which an incremental
+ *   update ends a batch and saves its checkpoint, so that a restarted connector resumes from
+ *   there. The default is 0, which saves the checkpoint at the end of each query. This requires
+ *   the incremental update query to be ordered by {@value #TIMESTAMP_COLUMN} (or
+ *   {@value #SEQUENCE_COLUMN}), in ascending order. A batch only ends after the last record with
+ *   a given value, so batches may be larger than this, and if the records are not in order, the
+ *   batch does not end early.
+ *   <li>"{@value #DB_INC_UPDATE_SLICE_SECONDS}" - The initial size in seconds of the time slices
+ *   that the incremental update query is run for. The default is 0, which runs the query once
+ *   from the last update time. When it is set, the query must have a second place holder for
+ *   the end of the time slice, e.g. {@code timestamp > ? and timestamp <= ?}, and the connector
+ *   runs the query for consecutive slices until it reaches the traversal start time.
+ *   <li>"{@value #DB_INC_UPDATE_SLICE_ROWS}" - The target number of records in each time slice
+ *   (the default is {@value #DEFAULT_INC_UPDATE_SLICE_ROWS}). The slices are made smaller after
+ *   a slice with too many records, and larger after a slice with few records.
+ *   <li>"{@value #DB_CHECKSUM_SQL}" - A query for the unique key columns and a row checksum
+ *   computed by the database, selected as {@value #CHECKSUM_COLUMN} (e.g.
+ *   {@code CHECKSUM(*)}, {@code ORA_HASH(...)}, or a hash of the concatenated columns). If set,
+ *   full traversals run this query instead of {@value #DB_ALL_RECORDS_SQL}, and only fetch the
+ *   records whose checksum differs from the last one sent, with {@value #DB_SINGLE_RECORD_SQL}.
+ *   The single record query is prepared once per traversal and run again for each record. When
+ *   no checksums are kept, such as after a restart, {@value #DB_ALL_RECORDS_SQL} is run instead.
+ *   This cannot be used with pagination.
+ *   <li>"{@value #DB_SINGLE_RECORD_SQL}" - A query for all of the columns of a single record,
+ *   with a place holder for each unique key column, in the order of
+ *   {@value #DB_UNIQUE_KEY_COLUMNS} (e.g. {@code ... where id = ?}). This is required with
+ *   {@value #DB_CHECKSUM_SQL}.
+ *   <li>"{@value #DB_RANGE_CHECKSUM_SQL}" - A query for an aggregate checksum of each range of
+ *   records computed by the database, selecting the range as {@value #RANGE_COLUMN} and its
+ *   checksum as {@value #CHECKSUM_COLUMN} (e.g. {@code select id / 100000 as range_column,
+ *   sum(ora_hash(...)) as checksum_column from ... group by id / 100000}). If set, full
+ *   traversals run this query instead of {@value #DB_ALL_RECORDS_SQL}, and only read the records
+ *   in the ranges whose checksum differs from the last one traversed, with
+ *   {@value #DB_RANGE_RECORDS_SQL}. The range checksums are kept in the full traversal
+ *   checkpoint. The range values must not be null. This cannot be used with pagination or
+ *   {@value #DB_CHECKSUM_SQL}.
+ *   <li>"{@value #DB_RANGE_RECORDS_SQL}" - A query for all of the columns of the records in one
+ *   range, with a single place holder for the range value (e.g.
+ *   {@code ... where id / 100000 = ?}). This is required with {@value #DB_RANGE_CHECKSUM_SQL}.
  *   <li>"{@value #DB_INC_UPDATE_TIMEZONE}" - Specifies the incremental update timestamp's timezone,
  *   if timestamp is being used. This is only necessary if the database timestamp data is of a
  *   different timezone than the connector execution.
@@ -75,6 +139,23 @@ import java.util.logging.Logger;
  *   <li>"{@value UrlBuilder#CONFIG_COLUMNS_TO_ESCAPE}" - Specifies the column(s) of a SQL query
  *   that will be URL escaped and used to create a viewable URL for search results.
  *   <li>"{@value #DB_BLOB_COLUMN}" - Specifies the content is contained in a single Blob column.
+ *   <li>"{@value #DB_LAZY_COLUMNS}" - Specifies the column(s) that are only read from the result
+ *   set when they are used (e.g. by the content template, or as the Blob column). These columns
+ *   are not included in the item metadata values, so they should not be used for structured data
+ *   or item metadata fields. Use this for large, optional columns such as LOBs. Since some JDBC
+ *   drivers can only read the columns of a record once and from left to right, the lazy columns
+ *   must be the last columns in {@value #DB_ALL_COLUMNS}, and must be selected last by the
+ *   queries.
+ *   <li>"{@value #DB_INTERN_COLUMNS}" - Specifies the column(s) whose string values are
+ *   deduplicated, so that records with the same value share one {@code String} instance. Use
+ *   this for columns with few distinct values, such as a status or department.
+ *   <li>"{@value #DB_COMPILED_CONTENT_TEMPLATE}" - If true, the content template is compiled
+ *   into a renderer that writes the HTML content directly as UTF-8 bytes. The compiled renderer
+ *   is checked against the template at startup, and the template is used directly for any
+ *   records that the renderer does not support. The default is false.
+ *   <li>"{@value #DB_ACL_CACHE_SIZE}" - The maximum number of distinct ACL column value
+ *   combinations whose {@link Acl} objects are kept and shared between records (e.g. 1000).
+ *   The default is {@value #DEFAULT_ACL_CACHE_SIZE}, which disables the cache.
  * </ul>
  */
 class ColumnManager {
@@ -89,10 +170,27 @@ class ColumnManager {
 
   // optional
   static final String DB_PAGINATION = "db.allRecordsSql.pagination";
+  static final String DB_UNIQUE_KEY_FORMAT = "db.uniqueKeyColumns.format";
   static final String DB_CONTENT_COLUMNS = "db.contentColumns";
   static final String DB_INC_UPDATE_SQL = "db.incrementalUpdateSql";
+  static final String DB_INC_UPDATE_BATCH_SIZE = "db.incrementalUpdateSql.batchSize";
+  static final String DB_INC_UPDATE_SLICE_SECONDS = "db.incrementalUpdateSql.sliceSeconds";
+  static final String DB_INC_UPDATE_SLICE_ROWS = "db.incrementalUpdateSql.sliceRows";
+  static final String DB_INC_UPDATE_START_SEQUENCE_SQL =
+      "db.incrementalUpdateSql.startSequenceSql";
   static final String DB_INC_UPDATE_TIMEZONE = "db.timestamp.timezone";
+  static final String DB_CHECKSUM_SQL = "db.checksumSql";
+  static final String DB_SINGLE_RECORD_SQL = "db.singleRecordSql";
+  static final String DB_RANGE_CHECKSUM_SQL = "db.rangeChecksumSql";
+  static final String DB_RANGE_RECORDS_SQL = "db.rangeRecordsSql";
   static final String DB_BLOB_COLUMN = "db.blobColumn";
+  static final String DB_LAZY_COLUMNS = "db.lazyColumns";
+  static final String DB_INTERN_COLUMNS = "db.internColumns";
+  static final String DB_COMPILED_CONTENT_TEMPLATE = "db.compiledContentTemplate";
+  static final String DB_ACL_CACHE_SIZE = "db.aclCacheSize";
+
+  static final int DEFAULT_ACL_CACHE_SIZE = 0;
+  static final int DEFAULT_INC_UPDATE_SLICE_ROWS = 10000;
 
   static final String ACL_READERS_USERS = "readers_users";
   static final String ACL_READERS_GROUPS = "readers_groups";
@@ -100,9 +198,14 @@ class ColumnManager {
   static final String ACL_DENIED_GROUPS = "denied_groups";
 
   static final String TIMESTAMP_COLUMN = "timestamp_column";
+  static final String SEQUENCE_COLUMN = "sequence_column";
+  static final String CHECKSUM_COLUMN = "checksum_column";
+  static final String RANGE_COLUMN = "range_column";
 
   private static final String DEFAULT_TIMEZONE_GMT = "GMT";
 
+  private static final Pattern ORDER_BY = Pattern.compile("(?is).*\\border\\s+by\\b.*");
+
   private static final List<String> ACL_COLUMNS =
       Collections.unmodifiableList(new ArrayList<>(Arrays.asList(
           ACL_READERS_USERS, ACL_READERS_GROUPS, ACL_DENIED_USERS, ACL_DENIED_GROUPS)));
@@ -110,19 +213,36 @@ class ColumnManager {
   private static final Logger log = Logger.getLogger(ColumnManager.class.getName());
 
   private final ContentTemplate contentTemplate;
+  private final ContentRenderer contentRenderer;
   private final boolean aclsEnabled;
+  private final LoadingCache<List<String>, Acl> aclCache;
   private final String blobColumn;
   private final Pagination pagination;
+  private final UniqueIdFormat uniqueIdFormat;
   private final boolean usingIncrementalUpdates;
   private final TimeZone incrementalUpdateTimezone;
+  private final int incrementalUpdateBatchSize;
+  private final boolean usingSequenceColumn;
+  private final int incrementalUpdateSliceSeconds;
+  private final int incrementalUpdateSliceRows;
   // variables ending in "Sql" store SQL statements
   private final String allRecordsSql;
   private final String incrementalUpdateSql;
+  private final String startSequenceSql;
+  private final String checksumSql;
+  private final String singleRecordSql;
+  private final String rangeChecksumSql;
+  private final String rangeRecordsSql;
   // variables ending in "Cols" store column definitions
   private final LinkedHashSet<String> allSqlCols;
   private final LinkedHashSet<String> contentSqlCols;
   private final LinkedHashSet<String> uniqueKeyCols;
+  private final ImmutableList<String> uniqueKeyColumnList;
+  private final ImmutableList<String> contentColumnList;
+  private final LinkedHashSet<String> lazySqlCols;
+  private final LinkedHashSet<String> internSqlCols;
   private final UrlBuilder urlBuilder;
+  private final ViewUrlTemplate viewUrlTemplate;
 
   /**
    * Store the various relevant column definitions originating from the configuration file for
@@ -163,10 +283,101 @@ class ColumnManager {
           "Missing column names in incremental update SQL query: " + missing);
     }
     incrementalUpdateTimezone = builder.timezone;
+    usingSequenceColumn =
+        usingIncrementalUpdates && incrementalUpdateSql.contains(SEQUENCE_COLUMN);
+    incrementalUpdateBatchSize = builder.incUpdateBatchSize;
+    checkConfiguration(incrementalUpdateBatchSize >= 0,
+        "Incremental update batch size cannot be negative: " + incrementalUpdateBatchSize);
+    if (usingIncrementalUpdates && incrementalUpdateBatchSize > 0) {
+      checkConfiguration(ORDER_BY.matcher(incrementalUpdateSql).matches(),
+          "Incremental update batches require the query to be ordered by "
+          + (usingSequenceColumn ? SEQUENCE_COLUMN : TIMESTAMP_COLUMN) + " ('order by').");
+    }
+    incrementalUpdateSliceSeconds = builder.incUpdateSliceSeconds;
+    incrementalUpdateSliceRows = builder.incUpdateSliceRows;
+    checkConfiguration(incrementalUpdateSliceSeconds >= 0 && incrementalUpdateSliceRows > 0,
+        "Invalid incremental update time slices: " + DB_INC_UPDATE_SLICE_SECONDS + "="
+        + incrementalUpdateSliceSeconds + ", " + DB_INC_UPDATE_SLICE_ROWS + "="
+        + incrementalUpdateSliceRows);
+    checkConfiguration(!usingSequenceColumn || incrementalUpdateSliceSeconds == 0,
+        "Incremental update time slices cannot be used with " + SEQUENCE_COLUMN + ".");
+    startSequenceSql = builder.startSequenceSql;
+    if (usingSequenceColumn) {
+      checkConfiguration(!startSequenceSql.trim().isEmpty(),
+          "Incremental updates with " + SEQUENCE_COLUMN + " require "
+          + DB_INC_UPDATE_START_SEQUENCE_SQL + " to be set.");
+      checkConfiguration(startSequenceSql.contains(SEQUENCE_COLUMN)
+          && !startSequenceSql.contains("?"),
+          "The start sequence query must select a column named " + SEQUENCE_COLUMN
+          + ", and cannot have a place holder ('?').");
+    }
+    if (usingIncrementalUpdates && incrementalUpdateSliceSeconds > 0) {
+      checkConfiguration(CharMatcher.is('?').countIn(incrementalUpdateSql) == 2,
+          "Using incremental update time slices requires two place holders in the query"
+          + " ('?'), for the start and end of the time slice.");
+    }
 
     uniqueKeyCols = makeColumnSet(builder.uniqueKeyCols, allSqlCols);
+    uniqueKeyColumnList = ImmutableList.copyOf(uniqueKeyCols);
+    uniqueIdFormat = builder.uniqueIdFormat;
+    checkConfiguration(!uniqueIdFormat.equals(UniqueIdFormat.INVALID),
+        "Unique key format must be one of " + UniqueIdFormat.VALUES);
+    log.log(Level.CONFIG, "Unique key format: {0}", uniqueIdFormat);
     log.log(Level.CONFIG, "UniqueKey: {0}", uniqueKeyCols);
 
+    checksumSql = builder.checksumSql;
+    singleRecordSql = builder.singleRecordSql;
+    if (!checksumSql.trim().isEmpty()) {
+      checkConfiguration(checksumSql.contains(CHECKSUM_COLUMN),
+          "The checksum query must select a column named " + CHECKSUM_COLUMN + ".");
+      missing = missingCols(uniqueKeyCols, checksumSql);
+      checkConfiguration(missing.isEmpty(),
+          "Missing unique key column names in checksum SQL query: " + missing);
+      checkConfiguration(pagination.equals(Pagination.NONE),
+          "The checksum query cannot be used with pagination.");
+      checkConfiguration(!singleRecordSql.trim().isEmpty(),
+          "The checksum query requires " + DB_SINGLE_RECORD_SQL + " to be set.");
+      checkConfiguration(
+          CharMatcher.is('?').countIn(singleRecordSql) == uniqueKeyCols.size(),
+          "The single record query requires a place holder ('?') for each unique key column.");
+      missing = missingCols(allSqlCols, singleRecordSql);
+      checkConfiguration(missing.isEmpty(),
+          "Missing column names in single record SQL query: " + missing);
+    }
+
+    rangeChecksumSql = builder.rangeChecksumSql;
+    rangeRecordsSql = builder.rangeRecordsSql;
+    if (!rangeChecksumSql.trim().isEmpty()) {
+      checkConfiguration(rangeChecksumSql.contains(RANGE_COLUMN)
+          && rangeChecksumSql.contains(CHECKSUM_COLUMN),
+          "The range checksum query must select columns named " + RANGE_COLUMN + " and "
+          + CHECKSUM_COLUMN + ".");
+      checkConfiguration(pagination.equals(Pagination.NONE),
+          "The range checksum query cannot be used with pagination.");
+      checkConfiguration(checksumSql.trim().isEmpty(),
+          "The range checksum query cannot be used with " + DB_CHECKSUM_SQL + ".");
+      checkConfiguration(!rangeRecordsSql.trim().isEmpty(),
+          "The range checksum query requires " + DB_RANGE_RECORDS_SQL + " to be set.");
+      checkConfiguration(CharMatcher.is('?').countIn(rangeRecordsSql) == 1,
+          "The range records query requires a single place holder ('?') for the range.");
+      missing = missingCols(allSqlCols, rangeRecordsSql);
+      checkConfiguration(missing.isEmpty(),
+          "Missing column names in range records SQL query: " + missing);
+    }
+
+    lazySqlCols = makeColumnSet(builder.lazyCols, allSqlCols);
+    checkConfiguration(Collections.disjoint(lazySqlCols, uniqueKeyCols),
+        "Unique key columns cannot be lazy columns: " + lazySqlCols);
+    List<String> allColumnList = new ArrayList<>(allSqlCols);
+    List<String> lastCols =
+        allColumnList.subList(allColumnList.size() - lazySqlCols.size(), allColumnList.size());
+    checkConfiguration(lazySqlCols.containsAll(lastCols),
+        "Lazy columns must be the last columns in " + DB_ALL_COLUMNS + ": " + lazySqlCols);
+    log.log(Level.CONFIG, "Lazy columns: {0}", lazySqlCols);
+
+    internSqlCols = makeColumnSet(builder.internCols, allSqlCols);
+    log.log(Level.CONFIG, "Interned columns: {0}", internSqlCols);
+
     // if the blob column is specified, it must be in the column definitions
     blobColumn = builder.blobCol.trim();
     checkConfiguration(blobColumn.isEmpty() || allSqlCols.contains(blobColumn),
@@ -177,6 +388,7 @@ class ColumnManager {
       // TODO(normang): Future: if Blob is defined content columns may be used for metadata content.
       contentSqlCols = new LinkedHashSet<>();
       contentTemplate = null;
+      contentRenderer = null;
       checkConfiguration(builder.contentCols.isEmpty()
               || builder.contentCols.equals(Collections.singletonList("*")),
           "Content columns not allowed with Blob column.");
@@ -194,14 +406,34 @@ class ColumnManager {
       log.log(Level.CONFIG, "Content columns: {0}", contentSqlCols);
 
       contentTemplate = createContentTemplate(contentSqlCols);
+      if (builder.compiledContentTemplate) {
+        contentRenderer =
+            ContentRenderer.compile(contentTemplate::apply, new ArrayList<>(contentSqlCols));
+      } else {
+        contentRenderer = null;
+      }
     }
 
+    contentColumnList = ImmutableList.copyOf(contentSqlCols);
+
     // by definition, individual repository-based Acls will be used iff any cols are specified
     List<String> aclColumns = new ArrayList<>(ACL_COLUMNS);
     aclColumns.retainAll(allSqlCols);
     aclsEnabled = !aclColumns.isEmpty();
     log.log(Level.CONFIG, "Repository based Acls: {0}", aclsEnabled ? "yes" : "no");
 
+    checkConfiguration(builder.aclCacheSize >= 0,
+        "ACL cache size cannot be negative: " + builder.aclCacheSize);
+    if (aclsEnabled && builder.aclCacheSize > 0) {
+      // Acl objects are immutable, so records with the same ACL column values can share one.
+      aclCache = CacheBuilder.newBuilder()
+          .maximumSize(builder.aclCacheSize)
+          .build(CacheLoader.from(
+              key -> Acl.createAcl(key.get(0), key.get(1), key.get(2), key.get(3))));
+    } else {
+      aclCache = null;
+    }
+
     RepositoryContext context = builder.context;
     if (!aclsEnabled && !context.getDefaultAclMode().isEnabled()) {
       throw new InvalidConfigurationException(
@@ -214,6 +446,7 @@ class ColumnManager {
       throw new InvalidConfigurationException(
           "Invalid view URL column name(s): '" + difference + "'");
     }
+    viewUrlTemplate = ViewUrlTemplate.compile(urlBuilder::buildUrl, new ArrayList<>(allSqlCols));
   }
 
   /**
@@ -240,10 +473,38 @@ class ColumnManager {
     return pagination;
   }
 
+  UniqueIdFormat getUniqueIdFormat() {
+    return uniqueIdFormat;
+  }
+
   String getIncUpdateSql() {
     return incrementalUpdateSql;
   }
 
+  boolean isUsingChecksums() {
+    return !checksumSql.trim().isEmpty();
+  }
+
+  String getChecksumSql() {
+    return checksumSql;
+  }
+
+  String getSingleRecordSql() {
+    return singleRecordSql;
+  }
+
+  boolean isUsingRangeChecksums() {
+    return !rangeChecksumSql.trim().isEmpty();
+  }
+
+  String getRangeChecksumSql() {
+    return rangeChecksumSql;
+  }
+
+  String getRangeRecordsSql() {
+    return rangeRecordsSql;
+  }
+
   boolean isUsingIncrementalUpdates() {
     return usingIncrementalUpdates;
   }
@@ -252,6 +513,26 @@ class ColumnManager {
     return incrementalUpdateTimezone;
   }
 
+  boolean isUsingSequenceColumn() {
+    return usingSequenceColumn;
+  }
+
+  String getStartSequenceSql() {
+    return startSequenceSql;
+  }
+
+  int getIncUpdateBatchSize() {
+    return incrementalUpdateBatchSize;
+  }
+
+  int getIncUpdateSliceSeconds() {
+    return incrementalUpdateSliceSeconds;
+  }
+
+  int getIncUpdateSliceRows() {
+    return incrementalUpdateSliceRows;
+  }
+
   LinkedHashSet<String> getAllSqlCols() {
     return new LinkedHashSet<>(allSqlCols);
   }
@@ -264,29 +545,78 @@ class ColumnManager {
     return new LinkedHashSet<>(uniqueKeyCols);
   }
 
+  /** Gets the content columns, in order, without copying them. */
+  ImmutableList<String> getContentColumns() {
+    return contentColumnList;
+  }
+
+  /** Gets the unique key columns, in order, without copying them. */
+  ImmutableList<String> getUniqueKeyColumns() {
+    return uniqueKeyColumnList;
+  }
+
+  LinkedHashSet<String> getLazySqlCols() {
+    return new LinkedHashSet<>(lazySqlCols);
+  }
+
+  LinkedHashSet<String> getInternSqlCols() {
+    return new LinkedHashSet<>(internSqlCols);
+  }
+
   @VisibleForTesting
   ContentTemplate getContentTemplate() {
     return contentTemplate;
   }
 
+  /**
+   * Gets the compiled content renderer.
+   *
+   * @return the renderer, or {@code null} if it is not enabled or the template cannot be compiled
+   */
+  ContentRenderer getContentRenderer() {
+    return contentRenderer;
+  }
+
   String getBlobColumn() {
     return blobColumn;
   }
 
   String getViewUrl(Map<String, Object> allColumnValues) {
-    return urlBuilder.buildUrl(allColumnValues);
+    if (viewUrlTemplate != null) {
+      String url = viewUrlTemplate.buildUrl(allColumnValues);
+      if (url != null) {
+        return url;
+      }
+    }
+    // UrlBuilder is not documented as thread safe, and records may be built concurrently.
+    synchronized (urlBuilder) {
+      return urlBuilder.buildUrl(allColumnValues);
+    }
   }
 
   static class Builder {
 
     private String mainSql;
     private String updateSql;
+    private String checksumSql = "";
+    private String singleRecordSql = "";
+    private String rangeChecksumSql = "";
+    private String rangeRecordsSql = "";
+    private String startSequenceSql = "";
     private Pagination pagination;
     private TimeZone timezone;
     private List<String> allSqlCols;
     private String blobCol;
     private List<String> contentCols;
     private List<String> uniqueKeyCols;
+    private List<String> lazyCols = Collections.emptyList();
+    private List<String> internCols = Collections.emptyList();
+    private UniqueIdFormat uniqueIdFormat = UniqueIdFormat.KEY;
+    private boolean compiledContentTemplate = false;
+    private int aclCacheSize = DEFAULT_ACL_CACHE_SIZE;
+    private int incUpdateBatchSize = 0;
+    private int incUpdateSliceSeconds = 0;
+    private int incUpdateSliceRows = DEFAULT_INC_UPDATE_SLICE_ROWS;
     private RepositoryContext context;
 
     Builder() {
@@ -302,6 +632,31 @@ class ColumnManager {
       return this;
     }
 
+    Builder setChecksumSql(String checksumSql) {
+      this.checksumSql = checksumSql;
+      return this;
+    }
+
+    Builder setSingleRecordSql(String singleRecordSql) {
+      this.singleRecordSql = singleRecordSql;
+      return this;
+    }
+
+    Builder setRangeChecksumSql(String rangeChecksumSql) {
+      this.rangeChecksumSql = rangeChecksumSql;
+      return this;
+    }
+
+    Builder setRangeRecordsSql(String rangeRecordsSql) {
+      this.rangeRecordsSql = rangeRecordsSql;
+      return this;
+    }
+
+    Builder setStartSequenceSql(String startSequenceSql) {
+      this.startSequenceSql = startSequenceSql;
+      return this;
+    }
+
     Builder setPagination(Pagination pagination) {
       this.pagination = pagination;
       return this;
@@ -332,6 +687,46 @@ class ColumnManager {
       return this;
     }
 
+    Builder setUniqueIdFormat(UniqueIdFormat uniqueIdFormat) {
+      this.uniqueIdFormat = uniqueIdFormat;
+      return this;
+    }
+
+    Builder setLazyCols(List<String> lazyCols) {
+      this.lazyCols = lazyCols;
+      return this;
+    }
+
+    Builder setInternCols(List<String> internCols) {
+      this.internCols = internCols;
+      return this;
+    }
+
+    Builder setCompiledContentTemplate(boolean compiledContentTemplate) {
+      this.compiledContentTemplate = compiledContentTemplate;
+      return this;
+    }
+
+    Builder setAclCacheSize(int aclCacheSize) {
+      this.aclCacheSize = aclCacheSize;
+      return this;
+    }
+
+    Builder setIncUpdateBatchSize(int incUpdateBatchSize) {
+      this.incUpdateBatchSize = incUpdateBatchSize;
+      return this;
+    }
+
+    Builder setIncUpdateSliceSeconds(int incUpdateSliceSeconds) {
+      this.incUpdateSliceSeconds = incUpdateSliceSeconds;
+      return this;
+    }
+
+    Builder setIncUpdateSliceRows(int incUpdateSliceRows) {
+      this.incUpdateSliceRows = incUpdateSliceRows;
+      return this;
+    }
+
     Builder setRepositoryContext(RepositoryContext context) {
       this.context = context;
       return this;
@@ -340,11 +735,19 @@ class ColumnManager {
     ColumnManager build() {
       checkNotNullNotEmpty(mainSql, "All records");
       checkNotNull(updateSql, "Update query can't be null.");
+      checkNotNull(checksumSql, "Checksum query can't be null.");
+      checkNotNull(singleRecordSql, "Single record query can't be null.");
+      checkNotNull(rangeChecksumSql, "Range checksum query can't be null.");
+      checkNotNull(rangeRecordsSql, "Range records query can't be null.");
+      checkNotNull(startSequenceSql, "Start sequence query can't be null.");
       checkNotNull(timezone, "Update query timezone can't be null.");
       checkNotNullNotEmpty(allSqlCols, "All columns");
       checkNotNullNotEmpty(contentCols, "Content columns");
       checkNotNullNotEmpty(uniqueKeyCols, "Unique key");
       checkNotNull(blobCol, "Blob column can't be null.");
+      checkNotNull(lazyCols, "Lazy columns can't be null.");
+      checkNotNull(internCols, "Interned columns can't be null.");
+      checkNotNull(uniqueIdFormat, "Unique key format can't be null.");
       checkNotNull(context, "RepositoryContext can't be null.");
       return new ColumnManager(this);
     }
@@ -387,7 +790,15 @@ class ColumnManager {
         .setPagination(
             Configuration.getValue(DB_PAGINATION, Pagination.NONE, Pagination::fromString)
                 .get())
+        .setUniqueIdFormat(
+            Configuration.getValue(DB_UNIQUE_KEY_FORMAT, UniqueIdFormat.KEY,
+                UniqueIdFormat::fromString).get())
         .setUpdateSql(Configuration.getString(DB_INC_UPDATE_SQL, "").get())
+        .setChecksumSql(Configuration.getString(DB_CHECKSUM_SQL, "").get())
+        .setSingleRecordSql(Configuration.getString(DB_SINGLE_RECORD_SQL, "").get())
+        .setRangeChecksumSql(Configuration.getString(DB_RANGE_CHECKSUM_SQL, "").get())
+        .setRangeRecordsSql(Configuration.getString(DB_RANGE_RECORDS_SQL, "").get())
+        .setStartSequenceSql(Configuration.getString(DB_INC_UPDATE_START_SEQUENCE_SQL, "").get())
         .setBlobCol(Configuration.getString(DB_BLOB_COLUMN, "").get())
         // custom value
         .setTimezone(
@@ -402,6 +813,22 @@ class ColumnManager {
                 Configuration.STRING_PARSER).get())
         .setUniqueKey(Configuration.getMultiValue(DB_UNIQUE_KEY_COLUMNS, null,
             Configuration.STRING_PARSER).get())
+        .setLazyCols(Configuration.getMultiValue(DB_LAZY_COLUMNS, Collections.emptyList(),
+            Configuration.STRING_PARSER).get())
+        .setInternCols(Configuration.getMultiValue(DB_INTERN_COLUMNS, Collections.emptyList(),
+            Configuration.STRING_PARSER).get())
+        // integers
+        .setAclCacheSize(
+            Configuration.getInteger(DB_ACL_CACHE_SIZE, DEFAULT_ACL_CACHE_SIZE).get())
+        .setIncUpdateBatchSize(Configuration.getInteger(DB_INC_UPDATE_BATCH_SIZE, 0).get())
+        .setIncUpdateSliceSeconds(
+            Configuration.getInteger(DB_INC_UPDATE_SLICE_SECONDS, 0).get())
+        .setIncUpdateSliceRows(
+            Configuration.getInteger(DB_INC_UPDATE_SLICE_ROWS, DEFAULT_INC_UPDATE_SLICE_ROWS)
+                .get())
+        // booleans
+        .setCompiledContentTemplate(
+            Configuration.getBoolean(DB_COMPILED_CONTENT_TEMPLATE, false).get())
         .setRepositoryContext(context)
         .build();
   }
@@ -534,11 +961,20 @@ class ColumnManager {
     if (!aclsEnabled) {
       return null;
     }
-    return Acl.createAcl(
-        getOrReturnEmpty(allColumnValues, ACL_READERS_USERS),
-        getOrReturnEmpty(allColumnValues, ACL_READERS_GROUPS),
-        getOrReturnEmpty(allColumnValues, ACL_DENIED_USERS),
-        getOrReturnEmpty(allColumnValues, ACL_DENIED_GROUPS));
+    String readersUsers = getOrReturnEmpty(allColumnValues, ACL_READERS_USERS);
+    String readersGroups = getOrReturnEmpty(allColumnValues, ACL_READERS_GROUPS);
+    String deniedUsers = getOrReturnEmpty(allColumnValues, ACL_DENIED_USERS);
+    String deniedGroups = getOrReturnEmpty(allColumnValues, ACL_DENIED_GROUPS);
+    if (aclCache == null) {
+      return Acl.createAcl(readersUsers, readersGroups, deniedUsers, deniedGroups);
+    }
+    try {
+      return aclCache.getUnchecked(
+          ImmutableList.of(readersUsers, readersGroups, deniedUsers, deniedGroups));
+    } catch (UncheckedExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw e;
+    }
   }
 
   /**
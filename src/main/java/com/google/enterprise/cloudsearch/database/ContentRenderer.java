@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Renders HTML content for a record directly into UTF-8 bytes.
+ *
+ * <p>The renderer is compiled once from a content template by splitting the template output into
+ * static HTML fragments (stored as UTF-8 bytes) and per-column slots (see
+ * {@link TemplateProbe}). Each record is then rendered by copying the fragments and
+ * HTML-escaping the column values straight into a reusable byte buffer, with no intermediate map
+ * or {@code String}.
+ *
+ * <p>The compiled output is checked against the template when the renderer is compiled. If the
+ * template does anything that the renderer cannot reproduce, {@link #compile} returns
+ * {@code null}. Records with missing, empty or non-scalar values are not rendered (see
+ * {@link #render}), since the template may lay those out differently; callers fall back to the
+ * template for them.
+ */
+class ContentRenderer {
+  private static final Logger log = Logger.getLogger(ContentRenderer.class.getName());
+
+  private static final ThreadLocal<ByteSink> BUFFERS = ThreadLocal.withInitial(ByteSink::new);
+
+  private final byte[][] fragments;
+  private final String[] slotColumns;
+  private final boolean numbersSupported;
+
+  private ContentRenderer(byte[][] fragments, String[] slotColumns, boolean numbersSupported) {
+    this.fragments = fragments;
+    this.slotColumns = slotColumns;
+    this.numbersSupported = numbersSupported;
+  }
+
+  /**
+   * Compiles a renderer equivalent to the given template.
+   *
+   * @param template applies the content template to a map of column values
+   * @param columns the content columns
+   * @return the renderer, or {@code null} if the template output cannot be reproduced
+   */
+  static ContentRenderer compile(Function<Map<String, Object>, String> template,
+      List<String> columns) {
+    checkNotNull(template, "Template cannot be null.");
+    checkNotNull(columns, "Columns cannot be null.");
+    ContentRenderer renderer;
+    try {
+      renderer = fromProbe(TemplateProbe.split(template, columns));
+      Map<String, Object> strings = TemplateProbe.probe(columns,
+          i -> " <b class='c" + i + "'>\"Tom\" & Jerry é€😀</b> ");
+      if (!Arrays.equals(template.apply(strings).getBytes(UTF_8), renderer.render(strings))) {
+        log.log(Level.WARNING, "Content template cannot be compiled, using it directly.");
+        return null;
+      }
+      Map<String, Object> numbers = TemplateProbe.probe(columns, i -> Long.valueOf(1234567 + i));
+      if (!Arrays.equals(template.apply(numbers).getBytes(UTF_8), renderer.render(numbers))) {
+        renderer = new ContentRenderer(renderer.fragments, renderer.slotColumns, false);
+      }
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Content template cannot be compiled, using it directly.", e);
+      return null;
+    }
+    log.log(Level.CONFIG, "Compiled content template: {0} fragments, numbers supported: {1}",
+        new Object[] {renderer.fragments.length, renderer.numbersSupported});
+    return renderer;
+  }
+
+  private static ContentRenderer fromProbe(TemplateProbe probe) {
+    List<String> segments = probe.getSegments();
+    byte[][] fragments = new byte[segments.size()][];
+    for (int i = 0; i < fragments.length; i++) {
+      fragments[i] = segments.get(i).getBytes(UTF_8);
+    }
+    return new ContentRenderer(fragments, probe.getSlotColumns().toArray(new String[0]), true);
+  }
+
+  /**
+   * Renders the HTML content of a record.
+   *
+   * @param allColumnValues the database record key/values from the result set
+   * @return the UTF-8 encoded HTML, or {@code null} if the record must be rendered by the template
+   */
+  byte[] render(Map<String, Object> allColumnValues) {
+    for (String column : slotColumns) {
+      Object value = allColumnValues.get(column);
+      boolean supported = (value instanceof CharSequence && ((CharSequence) value).length() > 0)
+          || (value instanceof Number && numbersSupported);
+      if (!supported) {
+        return null;
+      }
+    }
+    ByteSink sink = BUFFERS.get();
+    sink.reset();
+    sink.write(fragments[0]);
+    for (int i = 0; i < slotColumns.length; i++) {
+      Object value = allColumnValues.get(slotColumns[i]);
+      sink.writeEscaped(value instanceof CharSequence ? (CharSequence) value : value.toString());
+      sink.write(fragments[i + 1]);
+    }
+    byte[] html = sink.toByteArray();
+    sink.trim();
+    return html;
+  }
+
+  /** A growable byte buffer that encodes and HTML-escapes characters as UTF-8. */
+  private static class ByteSink {
+    private static final byte[] AMP = "&amp;".getBytes(UTF_8);
+    private static final byte[] LT = "&lt;".getBytes(UTF_8);
+    private static final byte[] GT = "&gt;".getBytes(UTF_8);
+    private static final byte[] QUOT = "&quot;".getBytes(UTF_8);
+    private static final byte[] APOS = "&#39;".getBytes(UTF_8);
+
+    private static final int INITIAL_SIZE = 8192;
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+
+    private byte[] buffer = new byte[INITIAL_SIZE];
+    private int size = 0;
+
+    void reset() {
+      size = 0;
+    }
+
+    void write(byte[] bytes) {
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, size, bytes.length);
+      size += bytes.length;
+    }
+
+    void writeEscaped(CharSequence value) {
+      int length = value.length();
+      ensureCapacity(length);
+      for (int i = 0; i < length; i++) {
+        char c = value.charAt(i);
+        switch (c) {
+          case '&':
+            write(AMP);
+            break;
+          case '<':
+            write(LT);
+            break;
+          case '>':
+            write(GT);
+            break;
+          case '"':
+            write(QUOT);
+            break;
+          case '\'':
+            write(APOS);
+            break;
+          default:
+            if (c < 0x80) {
+              ensureCapacity(1);
+              buffer[size++] = (byte) c;
+            } else if (c < 0x800) {
+              ensureCapacity(2);
+              buffer[size++] = (byte) (0xc0 | (c >> 6));
+              buffer[size++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+              int codePoint = Character.toCodePoint(c, value.charAt(++i));
+              ensureCapacity(4);
+              buffer[size++] = (byte) (0xf0 | (codePoint >> 18));
+              buffer[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+              buffer[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+              buffer[size++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+              ensureCapacity(1);
+              buffer[size++] = (byte) '?'; // same replacement as String.getBytes
+            } else {
+              ensureCapacity(3);
+              buffer[size++] = (byte) (0xe0 | (c >> 12));
+              buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+              buffer[size++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+      }
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(buffer, size);
+    }
+
+    /** Releases the buffer after an unusually large record, rather than keep it per thread. */
+    void trim() {
+      if (buffer.length > MAX_RETAINED_SIZE) {
+        buffer = new byte[INITIAL_SIZE];
+        size = 0;
+      }
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+      }
+    }
+  }
+}
@@ -18,12 +18,14 @@ package com.google.enterprise.cloudsearch.database;
 import static com.google.api.client.util.Preconditions.checkArgument;
 import static com.google.api.client.util.Preconditions.checkNotNull;
 import static com.google.api.client.util.Preconditions.checkState;
-import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.io.ByteStreams;
-import com.google.common.io.CharStreams;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
@@ -38,8 +40,12 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLXML;
 import java.sql.Types;
+import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -51,6 +57,16 @@ import java.util.logging.Logger;
  * <p>The access object can optionally be created with timestamp indicating that the query
  * should be infused with the timestamp in its "where" clause. This is used for incremental
  * update queries.
+ *
+ * <p>Columns may optionally be marked as lazy. Lazy columns are not read when the cursor moves to
+ * a record, but only when they are first requested from the {@link #getAllColumnValues()} map,
+ * either by key or by iterating over the map. They must be requested before the next call to
+ * {@link #next()}. {@link #getEagerColumnValues} returns the other columns without reading the
+ * lazy ones.
+ *
+ * <p>Columns may also be marked as interned. String values of interned columns are deduplicated
+ * through a weak interner shared by all queries, so that records with the same value share one
+ * instance while any of them is reachable.
  */
 /*
  * AutoCloseable for the benefit of the tests. Usually DatabaseAccess
@@ -59,27 +75,62 @@ import java.util.logging.Logger;
 class DatabaseAccess implements AutoCloseable {
   private static final Logger logger = Logger.getLogger(DatabaseAccess.class.getName());
 
+  private static final Interner<String> INTERNED_VALUES =
+      Interners.newBuilder().weak().concurrencyLevel(4).build();
+
   private ConnectionFactory connectionFactory;
   private final Connection connection;
   private final PreparedStatement preparedStatement;
-  private final ResultSet resultSet;
-  private final ImmutableMap<String, Integer> columnTypeMap;
-  private ImmutableMap<String, Object> allColumnValues;
+  private ResultSet resultSet;
+  // column labels, SQL types and lazy flags, indexed by result set position (from 0)
+  private final ImmutableList<String> columnLabels;
+  private final int[] columnTypes;
+  private final boolean[] lazyPositions;
+  private final boolean[] internPositions;
+  private final ImmutableMap<String, Integer> columnPositions;
+  private final ImmutableSet<String> lazyColumns;
+  private Map<String, Object> allColumnValues;
+  private long rowNumber = 0;
   private final TimeZone dbTimeZone;
+  private final Utf8StreamEncoder clobEncoder = new Utf8StreamEncoder();
 
   private DatabaseAccess(Builder builder) throws SQLException {
     boolean initialized = false;
     logger.log(Level.INFO, "Executing Sql statement: [{0}], checkpoint: [{1}]",
         new Object[]{builder.sql, builder.checkpoint});
     this.dbTimeZone = builder.dbTimeZone;
+    this.lazyColumns = ImmutableSet.copyOf(builder.lazyColumns);
+    Set<String> internedColumns = ImmutableSet.copyOf(builder.internedColumns);
     this.connectionFactory = builder.connectionFactory;
     try {
       connection = connectionFactory.createConnection();
       preparedStatement = connection.prepareStatement(builder.sql);
-      // TODO(jlacey): Add DocCheckpoint class to fetch single records using unique key columns.
       builder.checkpoint.setParameters(preparedStatement, dbTimeZone);
       resultSet = preparedStatement.executeQuery();
-      columnTypeMap = createColumnTypeMap(resultSet);
+      ResultSetMetaData rsMetaData = resultSet.getMetaData();
+      int columnCount = rsMetaData.getColumnCount();
+      ImmutableList.Builder<String> labels = ImmutableList.builder();
+      ImmutableMap.Builder<String, Integer> positions = ImmutableMap.builder();
+      columnTypes = new int[columnCount];
+      lazyPositions = new boolean[columnCount];
+      internPositions = new boolean[columnCount];
+      for (int i = 0; i < columnCount; i++) {
+        String label = rsMetaData.getColumnLabel(i + 1);
+        labels.add(label);
+        positions.put(label, i);
+        columnTypes[i] = rsMetaData.getColumnType(i + 1);
+        lazyPositions[i] = lazyColumns.contains(label);
+        internPositions[i] = internedColumns.contains(label);
+      }
+      columnLabels = labels.build();
+      columnPositions = positions.build();
+      for (int i = 1; i < columnCount; i++) {
+        if (lazyPositions[i - 1] && !lazyPositions[i]) {
+          throw new SQLException("Lazy columns " + lazyColumns + " must be selected after all of"
+              + " the other columns, but " + columnLabels.get(i) + " is selected after "
+              + columnLabels.get(i - 1) + ".");
+        }
+      }
       initialized = true;
     } finally {
       if (!initialized) {
@@ -97,6 +148,8 @@ class DatabaseAccess implements AutoCloseable {
     private String sql;
     private Checkpoint checkpoint;
     private TimeZone dbTimeZone = TimeZone.getDefault(); // default to local dbTimeZone
+    private Set<String> lazyColumns = ImmutableSet.of();
+    private Set<String> internedColumns = ImmutableSet.of();
 
     Builder setConnectionFactory(ConnectionFactory connectionFactory) {
       this.connectionFactory = connectionFactory;
@@ -118,18 +171,52 @@ class DatabaseAccess implements AutoCloseable {
       return this;
     }
 
+    Builder setLazyColumns(Set<String> lazyColumns) {
+      this.lazyColumns = lazyColumns;
+      return this;
+    }
+
+    Builder setInternedColumns(Set<String> internedColumns) {
+      this.internedColumns = internedColumns;
+      return this;
+    }
+
     DatabaseAccess build() throws SQLException {
       checkNotNull(connectionFactory, "Connection factory cannot be null.");
       checkArgument(!Strings.isNullOrEmpty(sql), "Sql query cannot be null/empty.");
       checkNotNull(checkpoint, "Checkpoint cannot be null.");
       checkNotNull(dbTimeZone, "Timezone cannot be null.");
+      checkNotNull(lazyColumns, "Lazy columns cannot be null.");
+      checkNotNull(internedColumns, "Interned columns cannot be null.");
       return new DatabaseAccess(this);
     }
   }
 
+  /**
+   * Runs the query again on the same connection and prepared statement, with the parameters of
+   * another checkpoint. The previous result set is closed.
+   *
+   * <p>This is used to run a query for many parameter values, such as one record at a time,
+   * without opening a new connection and preparing the statement for each one.
+   *
+   * @param checkpoint the checkpoint that sets the query parameters
+   * @throws SQLException on SQL error
+   */
+  void requery(Checkpoint checkpoint) throws SQLException {
+    checkState(preparedStatement != null && !preparedStatement.isClosed(),
+        "Statement is closed during a requery().");
+    logger.log(Level.FINEST, "Executing Sql statement again, checkpoint: [{0}]", checkpoint);
+    allColumnValues = null;
+    resultSet.close();
+    preparedStatement.clearParameters();
+    checkpoint.setParameters(preparedStatement, dbTimeZone);
+    resultSet = preparedStatement.executeQuery();
+  }
+
   boolean next() throws SQLException, IOException {
     checkState(resultSet != null && !resultSet.isClosed(),
         "Result set is closed during a next().");
+    rowNumber++;
     if (!resultSet.next()) {
       return false;
     }
@@ -137,70 +224,206 @@ class DatabaseAccess implements AutoCloseable {
     return true;
   }
 
-  /**
-   * This map will allow conversion of the column name (label) to the Sql type for use when
-   * fetching the column value (e.g. a Blob column will be fetched differently than an integer).
-   *
-   * @param rs the result set to analyze
-   * @return map of column labels to Sql type values
-   * @throws SQLException on Sql errors
-   */
-  private ImmutableMap<String, Integer> createColumnTypeMap(ResultSet rs) throws SQLException {
-    ImmutableMap.Builder<String, Integer> columnMap = ImmutableMap.builder();
-    ResultSetMetaData rsMetaData = rs.getMetaData();
-    for (int i = 1; i <= rsMetaData.getColumnCount(); i++) {
-      columnMap.put(rsMetaData.getColumnLabel(i), rsMetaData.getColumnType(i));
-    }
-    return columnMap.build();
-  }
-
   /**
    * Store the column values of the current record.
    *
+   * <p>Lazy columns are skipped here, and fetched on demand by {@link LazyColumnValues}.
+   *
    * @throws SQLException on SQL error
    */
   private void setAllColumnValues() throws SQLException, IOException {
     ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
-    for (String key : columnTypeMap.keySet()) {
-      Object value = getSingleColumnValue(key);
+    for (int i = 0; i < columnTypes.length; i++) {
+      if (lazyPositions[i]) {
+        continue;
+      }
+      Object value = getSingleColumnValue(i);
       if (value != null) { // skip any missing values
-        builder.put(key, value);
+        builder.put(columnLabels.get(i), value);
       }
     }
-    allColumnValues = builder.build();
+    if (lazyColumns.isEmpty()) {
+      allColumnValues = builder.build();
+    } else {
+      allColumnValues = new LazyColumnValues(builder.build(), rowNumber);
+    }
   }
 
-  ImmutableMap<String, Object> getAllColumnValues() {
+  Map<String, Object> getAllColumnValues() {
     checkState(allColumnValues != null, "Column values fetched before next().");
     return allColumnValues;
   }
 
+  /**
+   * Gets the column values of the current record, including any lazy columns, in a form that
+   * stays valid after the cursor advances.
+   *
+   * <p>This is used when records are handed off to other threads.
+   */
+  Map<String, Object> getDetachedColumnValues() {
+    Map<String, Object> values = getAllColumnValues();
+    if (values instanceof LazyColumnValues) {
+      ((LazyColumnValues) values).fetchAll();
+    }
+    return values;
+  }
+
+  /**
+   * Gets the column values of a record without reading any lazy columns.
+   *
+   * @param allColumnValues a record returned by {@link #getAllColumnValues()}
+   * @return the columns that are not lazy
+   */
+  static Map<String, Object> getEagerColumnValues(Map<String, Object> allColumnValues) {
+    if (allColumnValues instanceof LazyColumnValues) {
+      return ((LazyColumnValues) allColumnValues).eagerValues;
+    }
+    return allColumnValues;
+  }
+
+  /**
+   * A view of the current record that reads lazy columns from the result set on first access.
+   *
+   * <p>The lazy columns are selected after all of the other columns, and are read in order,
+   * because some JDBC drivers can only read the columns of a record once and from left to right.
+   * {@link #get} and {@link #containsKey} read a lazy column and any unread lazy columns before
+   * it. Every other method, including iterating over the map, reads all of the lazy columns, so
+   * that the map is a complete view of the record. As in the other records, columns with null
+   * values are omitted.
+   */
+  private class LazyColumnValues extends AbstractMap<String, Object> {
+    private final ImmutableMap<String, Object> eagerValues;
+    private final Map<String, Object> lazyValues = new HashMap<>();
+    private final long row;
+    private int nextPosition = 0;
+    private Set<Map.Entry<String, Object>> entrySet;
+
+    LazyColumnValues(ImmutableMap<String, Object> eagerValues, long row) {
+      this.eagerValues = eagerValues;
+      this.row = row;
+    }
+
+    @Override
+    public Set<Map.Entry<String, Object>> entrySet() {
+      if (entrySet == null) {
+        fetchAll();
+        ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+        for (String col : columnLabels) {
+          Object value = get(col);
+          if (value != null) {
+            builder.put(col, value);
+          }
+        }
+        entrySet = builder.build().entrySet();
+      }
+      return entrySet;
+    }
+
+    @Override
+    public Object get(Object key) {
+      Integer position = columnPositions.get(key);
+      if (position == null || !lazyPositions[position]) {
+        return eagerValues.get(key);
+      }
+      if (position >= nextPosition) {
+        checkState(row == rowNumber,
+            "Lazy column %s must be fetched before the next record is read.", key);
+        for (; nextPosition <= position; nextPosition++) {
+          if (lazyPositions[nextPosition]) {
+            String col = columnLabels.get(nextPosition);
+            try {
+              lazyValues.put(col, getSingleColumnValue(nextPosition));
+            } catch (IOException | SQLException e) {
+              throw new RuntimeException("Error fetching lazy column " + col, e);
+            }
+          }
+        }
+      }
+      return lazyValues.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return get(key) != null;
+    }
+
+    void fetchAll() {
+      for (int i = columnLabels.size() - 1; i >= 0; i--) {
+        if (lazyPositions[i]) {
+          get(columnLabels.get(i));
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the value of the sequence column as a {@code long}. Binary values of up to eight bytes,
+   * such as a SQL Server {@code rowversion}, are read as big-endian unsigned numbers.
+   */
+  private Long getSequenceValue(int position) throws SQLException, IOException {
+    int index = position + 1; // JDBC column index
+    switch (columnTypes[position]) {
+      case Types.BINARY:
+      case Types.VARBINARY:
+        byte[] bytes = resultSet.getBytes(index);
+        if (bytes == null) {
+          return null;
+        }
+        if (bytes.length > Long.BYTES) {
+          throw new IOException("Reserved column name '" + ColumnManager.SEQUENCE_COLUMN
+              + "' is longer than " + Long.BYTES + " bytes.");
+        }
+        long sequence = 0;
+        for (byte b : bytes) {
+          sequence = (sequence << 8) | (b & 0xFF);
+        }
+        return sequence;
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        long value = resultSet.getLong(index);
+        return resultSet.wasNull() ? null : value;
+      default:
+        throw new IOException("Reserved column name '" + ColumnManager.SEQUENCE_COLUMN
+            + "' must be an integer or binary.");
+    }
+  }
+
   /**
    * Get a single column value.
    *
-   * @param col name of the record column
+   * @param position the position of the record column, starting from 0
    * @return the value of the specified column
    * @throws SQLException on SQL error
    */
-  private Object getSingleColumnValue(String col) throws SQLException, IOException {
+  private Object getSingleColumnValue(int position) throws SQLException, IOException {
+    String col = columnLabels.get(position);
+    int index = position + 1; // JDBC column index
     if (col.equals(ColumnManager.TIMESTAMP_COLUMN)) {
-      if (columnTypeMap.get(col) != Types.TIMESTAMP) {
+      if (columnTypes[position] != Types.TIMESTAMP) {
         throw new IOException(
             "Reserved column name '" + ColumnManager.TIMESTAMP_COLUMN + "' must be a TIMESTAMP.");
       }
-      return resultSet.getTimestamp(col, Calendar.getInstance(dbTimeZone));
+      return resultSet.getTimestamp(index, Calendar.getInstance(dbTimeZone));
+    }
+    if (col.equals(ColumnManager.SEQUENCE_COLUMN)) {
+      return getSequenceValue(position);
     }
 
     Object value = null;
-    switch (columnTypeMap.get(col)) {
+    switch (columnTypes[position]) {
       case Types.ARRAY:
-        Array array = resultSet.getArray(col);
+        Array array = resultSet.getArray(index);
         if (array != null) {
           value = Arrays.asList((Object[]) array.getArray());
         }
         break;
       case Types.BLOB:
-        Blob blob = resultSet.getBlob(col);
+        Blob blob = resultSet.getBlob(index);
         if (blob != null) {
           try (InputStream lob = blob.getBinaryStream()){
             value = ByteStreams.toByteArray(lob);
@@ -214,10 +437,10 @@ class DatabaseAccess implements AutoCloseable {
         }
         break;
       case Types.CLOB:
-        Clob clob = resultSet.getClob(col);
+        Clob clob = resultSet.getClob(index);
         if (clob != null) {
           try (Reader reader = clob.getCharacterStream()){
-            value = CharStreams.toString(reader).getBytes(UTF_8);
+            value = clobEncoder.encode(reader, clob.length());
           } finally {
             try {
               clob.free();
@@ -228,10 +451,10 @@ class DatabaseAccess implements AutoCloseable {
         }
         break;
       case Types.NCLOB:
-        NClob nclob = resultSet.getNClob(col);
+        NClob nclob = resultSet.getNClob(index);
         if (nclob != null) {
           try (Reader reader = nclob.getCharacterStream()){
-            value = CharStreams.toString(reader).getBytes(UTF_8);
+            value = clobEncoder.encode(reader, nclob.length());
           } finally {
             try {
               nclob.free();
@@ -242,18 +465,18 @@ class DatabaseAccess implements AutoCloseable {
         }
         break;
       case Types.BINARY:
-        value = resultSet.getBytes(col);
+        value = resultSet.getBytes(index);
         break;
       case Types.VARBINARY: // TODO(jlacey): Use getBytes when we have coverage for LONGVARBINARY.
       case Types.LONGVARBINARY:
-        try (InputStream lob = resultSet.getBinaryStream(col)) {
+        try (InputStream lob = resultSet.getBinaryStream(index)) {
           if (lob != null) {
             value = ByteStreams.toByteArray(lob);
           }
         }
         break;
       case Types.SQLXML:
-        SQLXML sqlxml = resultSet.getSQLXML(col);
+        SQLXML sqlxml = resultSet.getSQLXML(index);
         if (sqlxml != null) {
           try {
             value = sqlxml.toString();
@@ -270,10 +493,13 @@ class DatabaseAccess implements AutoCloseable {
       case Types.STRUCT:
       case Types.JAVA_OBJECT:
         logger.log(Level.INFO, "Column type {0,number,#} not supported, skipping column {1}",
-            new Object[] {columnTypeMap.get(col), col});
+            new Object[] {columnTypes[position], col});
         break;
       default:
-        value = resultSet.getObject(col);
+        value = resultSet.getObject(index);
+    }
+    if (internPositions[position] && value instanceof String) {
+      value = INTERNED_VALUES.intern((String) value);
     }
     return value;
   }
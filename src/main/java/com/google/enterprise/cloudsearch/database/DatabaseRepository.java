@@ -21,8 +21,12 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import com.google.api.client.http.ByteArrayContent;
 import com.google.api.services.cloudsearch.v1.model.Item;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.hash.Hashing;
 import com.google.enterprise.cloudsearch.sdk.CheckpointCloseableIterable;
 import com.google.enterprise.cloudsearch.sdk.Connector;
 import com.google.enterprise.cloudsearch.sdk.InvalidConfigurationException;
@@ -40,12 +44,21 @@ import com.google.enterprise.cloudsearch.sdk.indexing.template.RepositoryContext
 import com.google.enterprise.cloudsearch.sdk.indexing.template.RepositoryDoc;
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,6 +73,60 @@ import java.util.logging.Logger;
  * <ul>
  *   <li>{@value IndexingServiceImpl#INDEXING_SERVICE_REQUEST_MODE} - Specifies which traversal
  *       mode to use: SYNCHRONOUS or ASYNCHRONOUS (the default is SYNCHRONOUS).
+ *   <li>{@value #DB_PREFETCH_THREADS} - The number of worker threads that build documents while a
+ *       separate thread reads ahead in the result set. The default is 0, which reads records and
+ *       builds documents one at a time on the traversal thread.
+ *   <li>{@value #DB_PREFETCH_QUEUE_SIZE} - The maximum number of records that are read ahead of
+ *       the traversal when {@value #DB_PREFETCH_THREADS} is used (the default is 100).
+ *   <li>{@value #DB_PREFETCH_ORDERED} - Whether documents built by the prefetch threads are
+ *       returned in result set order (the default is true). If false, documents are returned as
+ *       soon as they are built, and the checkpoint only advances over the records that have been
+ *       returned without gaps.
+ *   <li>{@value #DB_CHECKPOINT_ROWS} - The number of records after which a full traversal batch
+ *       ends with an intermediate checkpoint, so that a restarted traversal resumes from there.
+ *       The default is 0, which only saves a checkpoint at the end of each query. This requires
+ *       {@code OFFSET} pagination (see {@value ColumnManager#DB_PAGINATION}), since the offset
+ *       is passed to the query when the traversal resumes.
+ *   <li>{@value #DB_CHECKPOINT_SECONDS} - The number of seconds after which a full traversal
+ *       batch ends with an intermediate checkpoint (the default is 0, which disables it). This
+ *       also requires {@code OFFSET} pagination.
+ *   <li>{@value #DB_CATCH_UP_THREADS} - The number of incremental update time slices (see
+ *       {@value ColumnManager#DB_INC_UPDATE_SLICE_SECONDS}) that are read in parallel, each on
+ *       its own connection, when the incremental updates are behind by more than
+ *       {@value #DB_CATCH_UP_LAG_SECONDS}. The checkpoint only advances over the slices that have
+ *       been read without gaps. The default is 0, which reads one slice at a time.
+ *   <li>{@value #DB_CATCH_UP_LAG_SECONDS} - The number of seconds that the incremental updates
+ *       must be behind to read slices in parallel (the default is 3600).
+ *   <li>{@value #DB_POLL_MAX_INTERVAL_SECONDS} - If set, incremental updates adapt how often they
+ *       query the database (see {@link PollScheduler}). After a query that finds changes, the
+ *       next scheduled incremental update queries again. After each query that finds none, the
+ *       interval before the next query doubles, up to this number of seconds, and the scheduled
+ *       updates in between do nothing. The default is 0, which queries on every scheduled update.
+ *   <li>{@value #DB_RECENT_ITEMS_SIZE} - The number of items most recently sent by incremental
+ *       updates that are remembered, so that an item that is read again without any changes is
+ *       not sent again (see {@link RecentItemCache}). This is useful with an inclusive lower bound
+ *       ({@code >=}) in the incremental update query. The default is 0, which sends every item.
+ *   <li>{@value #DB_COALESCE_WINDOW_SECONDS} - If set, an item that changes again within this
+ *       number of seconds after incremental updates sent it is deferred, and its latest state is
+ *       sent by the first incremental update after the window has passed (see
+ *       {@link ChangeCoalescer}). The checkpoint is kept before the deferred records, so the
+ *       records after them are read again, and {@value #DB_RECENT_ITEMS_SIZE} is recommended.
+ *       This cannot be used with incremental update batches or time slices. The default is 0,
+ *       which sends every change right away.
+ *   <li>{@value #DB_COALESCE_MAX_ITEMS} - The number of items whose send time is tracked for
+ *       {@value #DB_COALESCE_WINDOW_SECONDS} (the default is 100000).
+ *   <li>{@value #DB_CHECKSUM_MAX_ITEMS} - The number of record or range checksums that are kept
+ *       when {@value ColumnManager#DB_CHECKSUM_SQL} or
+ *       {@value ColumnManager#DB_RANGE_CHECKSUM_SQL} is used (the default is 1000000). Records
+ *       or ranges whose checksum is not kept are read and sent again. The record checksums are
+ *       kept in memory, so the first full traversal after a restart reads every record, with
+ *       {@value ColumnManager#DB_ALL_RECORDS_SQL}. The range checksums are kept in the full
+ *       traversal checkpoint. Since unchanged records are not sent,
+ *       {@value #TRAVERSE_USE_QUEUES} must be false, and records that are deleted from the
+ *       database are not detected by full traversals.
+ *   <li>{@value #DB_COMPILED_ITEM_METADATA} - If true, the {@code itemMetadata.*} configuration
+ *       is read once at startup instead of for every record (the default is false). It is
+ *       checked against the configuration at startup, and ignored if it does not match.
  * </ul>
  */
 class DatabaseRepository implements Repository {
@@ -67,12 +134,46 @@ class DatabaseRepository implements Repository {
   /* @deprecated Use {@link IndexingServiceImpl#INDEXING_SERVICE_REQUEST_MODE} */
   public static final String TRAVERSE_UPDATE_MODE = "traverse.updateMode";
 
+  /* The SDK's FullTraversalConnector deletes the items that a full traversal does not send. */
+  static final String TRAVERSE_USE_QUEUES = "traverse.useQueues";
+
+  static final String DB_PREFETCH_THREADS = "db.prefetch.threads";
+  static final String DB_PREFETCH_QUEUE_SIZE = "db.prefetch.queueSize";
+  static final String DB_PREFETCH_ORDERED = "db.prefetch.ordered";
+  static final String DB_COMPILED_ITEM_METADATA = "db.compiledItemMetadata";
+  static final String DB_CHECKPOINT_ROWS = "db.checkpoint.rows";
+  static final String DB_CHECKPOINT_SECONDS = "db.checkpoint.seconds";
+  static final String DB_CATCH_UP_THREADS = "db.catchUp.threads";
+  static final String DB_CATCH_UP_LAG_SECONDS = "db.catchUp.lagSeconds";
+  static final String DB_POLL_MAX_INTERVAL_SECONDS = "db.poll.maxIntervalSeconds";
+  static final String DB_RECENT_ITEMS_SIZE = "db.recentItems.size";
+  static final String DB_COALESCE_WINDOW_SECONDS = "db.coalesce.windowSeconds";
+  static final String DB_COALESCE_MAX_ITEMS = "db.coalesce.maxItems";
+  static final String DB_CHECKSUM_MAX_ITEMS = "db.checksum.maxItems";
+
+  /** The maximum size of an item payload in the Cloud Search API. */
+  private static final int MAX_PAYLOAD_BYTES = 10000;
+
   private static final Logger logger = Logger.getLogger(DatabaseRepository.class.getName());
 
   private ConnectionFactory connectionFactory;
   private ColumnManager columnManager;
   private RequestMode requestMode = RequestMode.UNSPECIFIED;
+  private int prefetchThreads = 0;
+  private int prefetchQueueSize;
+  private boolean prefetchOrdered;
+  private long checkpointRows;
+  private long checkpointMillis;
+  private int catchUpThreads;
+  private long catchUpLagMillis;
+  private PollScheduler pollScheduler;
+  private RecentItemCache recentItems;
+  private ChangeCoalescer coalescer;
+  private LongLruMap checksums;
+  private int checksumMaxItems;
+  private ItemMetadataPlan itemMetadataPlan;
   private final long startTimestamp;
+  private long startSequence;
   private final Helper databaseRepositoryHelper;
 
   DatabaseRepository() {
@@ -105,6 +206,99 @@ class DatabaseRepository implements Repository {
             IndexingServiceImpl.INDEXING_SERVICE_REQUEST_MODE,
             requestMode.name() });
     }
+    prefetchThreads = Configuration.getInteger(DB_PREFETCH_THREADS, 0).get();
+    prefetchQueueSize = Configuration.getInteger(DB_PREFETCH_QUEUE_SIZE, 100).get();
+    prefetchOrdered = Configuration.getBoolean(DB_PREFETCH_ORDERED, true).get();
+    if (prefetchThreads < 0 || prefetchQueueSize < 1) {
+      throw new InvalidConfigurationException("Invalid prefetch configuration: "
+          + DB_PREFETCH_THREADS + "=" + prefetchThreads + ", "
+          + DB_PREFETCH_QUEUE_SIZE + "=" + prefetchQueueSize);
+    }
+    int rows = Configuration.getInteger(DB_CHECKPOINT_ROWS, 0).get();
+    int seconds = Configuration.getInteger(DB_CHECKPOINT_SECONDS, 0).get();
+    if (rows < 0 || seconds < 0) {
+      throw new InvalidConfigurationException("Invalid checkpoint configuration: "
+          + DB_CHECKPOINT_ROWS + "=" + rows + ", " + DB_CHECKPOINT_SECONDS + "=" + seconds);
+    }
+    if ((rows > 0 || seconds > 0) && !columnManager.getPagination().equals(Pagination.OFFSET)) {
+      throw new InvalidConfigurationException(DB_CHECKPOINT_ROWS + " and "
+          + DB_CHECKPOINT_SECONDS + " require " + ColumnManager.DB_PAGINATION + "=offset.");
+    }
+    checkpointRows = rows;
+    checkpointMillis = seconds * 1000L;
+    if (columnManager.getIncUpdateBatchSize() > 0 && prefetchThreads > 0 && !prefetchOrdered) {
+      throw new InvalidConfigurationException("Incremental update batches require "
+          + DB_PREFETCH_ORDERED + "=true when " + DB_PREFETCH_THREADS + " is used.");
+    }
+    catchUpThreads = Configuration.getInteger(DB_CATCH_UP_THREADS, 0).get();
+    int lagSeconds = Configuration.getInteger(DB_CATCH_UP_LAG_SECONDS, 3600).get();
+    if (catchUpThreads < 0 || lagSeconds < 0) {
+      throw new InvalidConfigurationException("Invalid catch-up configuration: "
+          + DB_CATCH_UP_THREADS + "=" + catchUpThreads + ", "
+          + DB_CATCH_UP_LAG_SECONDS + "=" + lagSeconds);
+    }
+    if (catchUpThreads > 0 && columnManager.getIncUpdateSliceSeconds() == 0) {
+      throw new InvalidConfigurationException(DB_CATCH_UP_THREADS + " requires "
+          + ColumnManager.DB_INC_UPDATE_SLICE_SECONDS + " to be set.");
+    }
+    catchUpLagMillis = TimeUnit.SECONDS.toMillis(lagSeconds);
+    int pollSeconds = Configuration.getInteger(DB_POLL_MAX_INTERVAL_SECONDS, 0).get();
+    if (pollSeconds < 0) {
+      throw new InvalidConfigurationException("Invalid polling configuration: "
+          + DB_POLL_MAX_INTERVAL_SECONDS + "=" + pollSeconds);
+    }
+    if (pollSeconds > 0) {
+      pollScheduler = new PollScheduler(TimeUnit.SECONDS.toMillis(pollSeconds),
+          databaseRepositoryHelper::getCurrentTime);
+    }
+    int recentItemsSize = Configuration.getInteger(DB_RECENT_ITEMS_SIZE, 0).get();
+    if (recentItemsSize < 0 || recentItemsSize > LongLruMap.MAX_CAPACITY) {
+      throw new InvalidConfigurationException("Invalid recent items configuration: "
+          + DB_RECENT_ITEMS_SIZE + "=" + recentItemsSize);
+    }
+    if (recentItemsSize > 0) {
+      recentItems = new RecentItemCache(recentItemsSize);
+    }
+    int coalesceSeconds = Configuration.getInteger(DB_COALESCE_WINDOW_SECONDS, 0).get();
+    int coalesceItems = Configuration.getInteger(DB_COALESCE_MAX_ITEMS, 100000).get();
+    if (coalesceSeconds < 0 || coalesceItems < 1 || coalesceItems > LongLruMap.MAX_CAPACITY) {
+      throw new InvalidConfigurationException("Invalid coalescing configuration: "
+          + DB_COALESCE_WINDOW_SECONDS + "=" + coalesceSeconds + ", "
+          + DB_COALESCE_MAX_ITEMS + "=" + coalesceItems);
+    }
+    if (coalesceSeconds > 0) {
+      if (columnManager.getIncUpdateBatchSize() > 0
+          || columnManager.getIncUpdateSliceSeconds() > 0) {
+        throw new InvalidConfigurationException(DB_COALESCE_WINDOW_SECONDS
+            + " cannot be used with " + ColumnManager.DB_INC_UPDATE_BATCH_SIZE + " or "
+            + ColumnManager.DB_INC_UPDATE_SLICE_SECONDS + ".");
+      }
+      coalescer = new ChangeCoalescer(TimeUnit.SECONDS.toMillis(coalesceSeconds), coalesceItems,
+          databaseRepositoryHelper::getCurrentTime);
+    }
+    if (columnManager.isUsingChecksums() || columnManager.isUsingRangeChecksums()) {
+      if (Configuration.getBoolean(TRAVERSE_USE_QUEUES, true).get()) {
+        throw new InvalidConfigurationException((columnManager.isUsingChecksums()
+                ? ColumnManager.DB_CHECKSUM_SQL : ColumnManager.DB_RANGE_CHECKSUM_SQL)
+            + " requires " + TRAVERSE_USE_QUEUES + "=false, or the unchanged items would be"
+            + " deleted.");
+      }
+      int checksumItems = Configuration.getInteger(DB_CHECKSUM_MAX_ITEMS, 1000000).get();
+      if (checksumItems < 1 || checksumItems > LongLruMap.MAX_CAPACITY) {
+        throw new InvalidConfigurationException("Invalid checksum configuration: "
+            + DB_CHECKSUM_MAX_ITEMS + "=" + checksumItems);
+      }
+      checksumMaxItems = checksumItems;
+      if (columnManager.isUsingChecksums()) {
+        checksums = new LongLruMap(checksumItems);
+      }
+    }
+    if (Configuration.getBoolean(DB_COMPILED_ITEM_METADATA, false).get()) {
+      itemMetadataPlan = ItemMetadataPlan.compile();
+    }
+    if (columnManager.isUsingSequenceColumn()) {
+      startSequence = getStartSequence();
+    }
   }
 
   @Override
@@ -161,19 +355,149 @@ class DatabaseRepository implements Repository {
       }
     }
 
+    // The range checksums are only read, and then replaced, by range checksum traversals.
+    Map<String, Long> rangeChecksums = currentCheckpoint.getRangeChecksums();
+    currentCheckpoint.setRangeChecksums(null);
+    if (columnManager.isUsingChecksums()) {
+      return getChangedDocs(currentCheckpoint, columnManager.getChecksumSql(), null);
+    } else if (columnManager.isUsingRangeChecksums()) {
+      return getChangedDocs(currentCheckpoint, columnManager.getRangeChecksumSql(),
+          rangeChecksums == null ? Collections.emptyMap() : rangeChecksums);
+    }
+
     DatabaseAccess databaseAccess;
     try {
       databaseAccess = new DatabaseAccess.Builder()
           .setConnectionFactory(connectionFactory)
           .setSql(columnManager.getAllRecordsSql())
           .setCheckpoint(currentCheckpoint)
+          .setLazyColumns(columnManager.getLazySqlCols())
+          .setInternedColumns(columnManager.getInternSqlCols())
+          .build();
+    } catch (SQLException e) {
+      throw new RepositoryException.Builder()
+          .setErrorMessage("Error with SQL query").setCause(e).build();
+    }
+    logger.log(Level.FINE, "End getAllDocs");
+    return getRepositoryDocIterable(databaseAccess, currentCheckpoint, checkpointRows,
+        checkpointMillis);
+  }
+
+  /**
+   * Runs the record or range checksum query, and returns the records whose checksum, or whose
+   * range's checksum, has changed.
+   *
+   * @param checkpoint the full traversal checkpoint, which records the pagination and the range
+   *     checksums
+   * @param checksumSql the checksum query
+   * @param previousRanges the range checksums from the last traversal, or {@code null} if the
+   *     checksum query returns record checksums
+   * @return an iterable over the changed records
+   * @throws RepositoryException on access errors
+   */
+  private CheckpointCloseableIterable<ApiOperation> getChangedDocs(FullCheckpoint checkpoint,
+      String checksumSql, Map<String, Long> previousRanges) throws RepositoryException {
+    checkpoint.resetCheckpoint(); // intermediate checkpoints are not supported
+    DatabaseAccess checksumAccess;
+    try {
+      checksumAccess = new DatabaseAccess.Builder()
+          .setConnectionFactory(connectionFactory)
+          .setSql(checksumSql)
+          .setCheckpoint(checkpoint)
           .build();
     } catch (SQLException e) {
       throw new RepositoryException.Builder()
           .setErrorMessage("Error with SQL query").setCause(e).build();
     }
+    if (previousRanges == null && checksums.size() == 0) {
+      return getSeededDocs(checksumAccess, checkpoint);
+    }
     logger.log(Level.FINE, "End getAllDocs");
-    return getRepositoryDocIterable(databaseAccess, currentCheckpoint);
+    return new ChecksumIterable(checksumAccess, checkpoint, previousRanges);
+  }
+
+  /**
+   * Reads all of the record checksums, and then returns all of the records from the all records
+   * query. This is used when no checksums are kept, such as after a restart, so that every
+   * record is read in a single scan instead of one at a time.
+   *
+   * <p>The checksums are read before the records, so a record that changes in between is sent
+   * with its new values but recorded with its old checksum, and it is sent again by the next
+   * traversal.
+   *
+   * @param checksumAccess the record checksum query, which is closed here
+   * @param checkpoint the full traversal checkpoint, which only records the pagination
+   * @return an iterable over all of the records
+   * @throws RepositoryException on access errors
+   */
+  private CheckpointCloseableIterable<ApiOperation> getSeededDocs(DatabaseAccess checksumAccess,
+      FullCheckpoint checkpoint) throws RepositoryException {
+    PendingChecksums pending = new PendingChecksums();
+    try {
+      while (checksumAccess.next()) {
+        Map<String, Object> keyValues = checksumAccess.getAllColumnValues();
+        Object value = keyValues.get(ColumnManager.CHECKSUM_COLUMN);
+        if (value != null && !pending.add(getChecksumId(keyValues), toChecksum(value))) {
+          break;
+        }
+      }
+    } catch (IOException | SQLException e) {
+      throw new RepositoryException.Builder()
+          .setErrorMessage("Error reading record checksums").setCause(e).build();
+    } finally {
+      checksumAccess.close();
+    }
+    logger.log(Level.INFO, "No record checksums are kept, reading all records");
+    DatabaseAccess databaseAccess;
+    try {
+      databaseAccess = new DatabaseAccess.Builder()
+          .setConnectionFactory(connectionFactory)
+          .setSql(columnManager.getAllRecordsSql())
+          .setCheckpoint(checkpoint)
+          .setLazyColumns(columnManager.getLazySqlCols())
+          .setInternedColumns(columnManager.getInternSqlCols())
+          .build();
+    } catch (SQLException e) {
+      throw new RepositoryException.Builder()
+          .setErrorMessage("Error with SQL query").setCause(e).build();
+    }
+    logger.log(Level.FINE, "End getAllDocs");
+    return new SeededIterable(getRepositoryDocIterable(databaseAccess, checkpoint, 0, 0),
+        pending);
+  }
+
+  /** Gets the key of a record in the checksums, a hash of its item name. */
+  private long getChecksumId(Map<String, Object> keyValues) {
+    return RecentItemCache.hashName(
+        getItemName(UniqueKey.makeUniqueId(columnManager.getUniqueKeyColumns(), keyValues)));
+  }
+
+  /**
+   * Opens the range records query for one range.
+   *
+   * @param rangeValues a row of the range checksum query
+   * @return the records in the range
+   */
+  private DatabaseAccess openRange(Map<String, Object> rangeValues) throws SQLException {
+    return new DatabaseAccess.Builder()
+        .setConnectionFactory(connectionFactory)
+        .setSql(columnManager.getRangeRecordsSql())
+        .setCheckpoint(new DocCheckpoint(
+            Collections.singletonList(ColumnManager.RANGE_COLUMN), rangeValues))
+        .setLazyColumns(columnManager.getLazySqlCols())
+        .setInternedColumns(columnManager.getInternSqlCols())
+        .build();
+  }
+
+  /** Converts a checksum value from the database to a {@code long}. */
+  private static long toChecksum(Object value) {
+    if (value instanceof Number) {
+      return ((Number) value).longValue();
+    } else if (value instanceof byte[]) {
+      return Hashing.murmur3_128().hashBytes((byte[]) value).asLong();
+    } else {
+      return Hashing.murmur3_128().hashString(value.toString(), UTF_8).asLong();
+    }
   }
 
   /**
@@ -184,7 +508,7 @@ class DatabaseRepository implements Repository {
    * {@link CheckpointCloseableIterable} object with an updated check point back to the
    * {@link Connector} for processing.
    *
-   * @param checkpoint the timestamp of the last incremental update
+   * @param checkpoint the timestamp or sequence value of the last incremental update
    * @return a fully formed {@link CheckpointCloseableIterable} object or {@code null} if no
    * new updates
    * @throws RepositoryException on access errors
@@ -196,9 +520,17 @@ class DatabaseRepository implements Repository {
     if (!columnManager.isUsingIncrementalUpdates()) {
       return null;
     }
+    if (pollScheduler != null && !pollScheduler.isPollDue()) {
+      logger.log(Level.FINE, "Skipping getChanges, next poll in {0} ms",
+          pollScheduler.getIntervalMillis());
+      return null;
+    }
 
     logger.log(Level.FINE, "Start getChanges, checkpoint: {0}",
         checkpoint == null ? null : new String(checkpoint, UTF_8));
+    if (columnManager.isUsingSequenceColumn()) {
+      return getSequenceChanges(checkpoint);
+    }
     IncrementalCheckpoint currentCheckpoint;
     if (checkpoint == null) {
       currentCheckpoint = new IncrementalCheckpoint(startTimestamp);
@@ -206,22 +538,121 @@ class DatabaseRepository implements Repository {
       currentCheckpoint = IncrementalCheckpoint.parse(checkpoint);
     }
     currentCheckpoint.setTraversalStartTime(databaseRepositoryHelper.getCurrentTime());
+    int batchSize = columnManager.getIncUpdateBatchSize();
+    currentCheckpoint.setOrdered(batchSize > 0);
+    if (columnManager.getIncUpdateSliceSeconds() > 0) {
+      currentCheckpoint.setSlices(
+          TimeUnit.SECONDS.toMillis(columnManager.getIncUpdateSliceSeconds()),
+          columnManager.getIncUpdateSliceRows());
+    }
+
+    if (catchUpThreads > 0 && currentCheckpoint.getLagMillis() > catchUpLagMillis) {
+      List<IncrementalCheckpoint> slices = currentCheckpoint.split(catchUpThreads);
+      logger.log(Level.INFO, "Catching up on incremental updates with {0} parallel slices",
+          slices.size());
+      List<Callable<DatabaseAccess>> queries = new ArrayList<>();
+      for (IncrementalCheckpoint slice : slices) {
+        queries.add(() -> getIncrementalAccess(slice));
+      }
+      logger.log(Level.FINE, "End getChanges");
+      return trackPoll(new CatchUpIterable(
+          new ParallelSliceIterator(queries, catchUpThreads, prefetchQueueSize),
+          currentCheckpoint, slices));
+    }
 
     DatabaseAccess databaseAccess;
     try {
-      databaseAccess = new DatabaseAccess.Builder()
-          .setConnectionFactory(connectionFactory)
-          .setSql(columnManager.getIncUpdateSql())
-          .setCheckpoint(currentCheckpoint)
-          .setTimezone(columnManager.getIncUpdateTimezone())
-          .build();
+      databaseAccess = getIncrementalAccess(currentCheckpoint);
+    } catch (SQLException e) {
+      throw new RepositoryException.Builder()
+          .setErrorMessage("Error with SQL query").setCause(e).build();
+    }
+
+    logger.log(Level.FINE, "End getChanges");
+    return trackPoll(getChangesIterable(databaseAccess, currentCheckpoint, batchSize));
+  }
+
+  /**
+   * Runs the start sequence query, so that the first incremental update without a checkpoint
+   * starts from the records that changed after the connector started, like the first
+   * incremental update with a timestamp.
+   *
+   * @return the largest sequence value, or 0 if there are no records
+   * @throws RepositoryException on access errors
+   */
+  private long getStartSequence() throws RepositoryException {
+    try (DatabaseAccess access = new DatabaseAccess.Builder()
+        .setConnectionFactory(connectionFactory)
+        .setSql(columnManager.getStartSequenceSql())
+        .setCheckpoint(new FullCheckpoint())
+        .build()) {
+      Object value = access.next()
+          ? access.getAllColumnValues().get(ColumnManager.SEQUENCE_COLUMN) : null;
+      long sequence = (value == null) ? 0 : (Long) value;
+      logger.log(Level.CONFIG, "Start sequence value: {0}", sequence);
+      return sequence;
+    } catch (IOException | SQLException e) {
+      throw new RepositoryException.Builder()
+          .setErrorMessage("Error with SQL query").setCause(e).build();
+    }
+  }
+
+  /** Gets the changed records since the last sequence value in the checkpoint. */
+  private CheckpointCloseableIterable<ApiOperation> getSequenceChanges(byte[] checkpoint)
+      throws RepositoryException {
+    SequenceCheckpoint currentCheckpoint;
+    if (checkpoint == null) {
+      currentCheckpoint = new SequenceCheckpoint(startSequence);
+    } else {
+      currentCheckpoint = SequenceCheckpoint.parse(checkpoint);
+    }
+    int batchSize = columnManager.getIncUpdateBatchSize();
+    currentCheckpoint.setOrdered(batchSize > 0);
+
+    DatabaseAccess databaseAccess;
+    try {
+      databaseAccess = getIncrementalAccess(currentCheckpoint);
     } catch (SQLException e) {
       throw new RepositoryException.Builder()
           .setErrorMessage("Error with SQL query").setCause(e).build();
     }
 
     logger.log(Level.FINE, "End getChanges");
-    return getRepositoryDocIterable(databaseAccess, currentCheckpoint);
+    return trackPoll(getChangesIterable(databaseAccess, currentCheckpoint, batchSize));
+  }
+
+  /** Gets the changed records, deferring the hot items if changes are coalesced. */
+  private ResultSetCloseableIterable<ApiOperation> getChangesIterable(
+      DatabaseAccess databaseAccess, Checkpoint checkpoint, int batchSize) {
+    ResultSetCloseableIterable<ApiOperation> changes =
+        getRepositoryDocIterable(databaseAccess, checkpoint, batchSize, 0);
+    if (coalescer != null) {
+      changes.setDeferral(allColumnValues -> coalescer.isHot(getItemName(
+          UniqueKey.makeUniqueId(columnManager.getUniqueKeyColumns(), allColumnValues))));
+    }
+    return changes;
+  }
+
+  /** Skips the recently sent items that have not changed, and tracks the poll. */
+  private CheckpointCloseableIterable<ApiOperation> trackPoll(
+      CheckpointCloseableIterable<ApiOperation> changes) {
+    if (recentItems != null) {
+      changes = recentItems.filter(changes);
+    }
+    return (pollScheduler == null) ? changes : pollScheduler.track(changes);
+  }
+
+  /** Runs the incremental update query. */
+  private DatabaseAccess getIncrementalAccess(Checkpoint checkpoint)
+      throws SQLException {
+    return new DatabaseAccess.Builder()
+        .setConnectionFactory(connectionFactory)
+        .setSql(columnManager.getIncUpdateSql())
+        .setCheckpoint(checkpoint)
+        .setTimezone(columnManager.getIncUpdateTimezone())
+        .setLazyColumns(columnManager.getLazySqlCols())
+        .setInternedColumns(columnManager.getInternSqlCols())
+        .build();
   }
 
   /**
@@ -234,11 +665,29 @@ class DatabaseRepository implements Repository {
   @VisibleForTesting
   ResultSetCloseableIterable<ApiOperation> getRepositoryDocIterable(
       DatabaseAccess databaseAccess, Checkpoint checkpoint) {
+    return getRepositoryDocIterable(databaseAccess, checkpoint, 0, 0);
+  }
+
+  /**
+   * Get a {@link RepositoryDoc} iterable that ends with an intermediate checkpoint when the
+   * given number of records have been returned or the given time has passed.
+   *
+   * @param databaseAccess object containing the appropriate result set
+   * @param checkpoint the {@link Checkpoint} for updating with result set data
+   * @param checkpointRows the maximum number of records in a batch, or 0
+   * @param checkpointMillis the maximum duration of a batch in milliseconds, or 0
+   * @return the correct type of iterable
+   */
+  private ResultSetCloseableIterable<ApiOperation> getRepositoryDocIterable(
+      DatabaseAccess databaseAccess, Checkpoint checkpoint, long checkpointRows,
+      long checkpointMillis) {
     String blobColumn = columnManager.getBlobColumn();
     if (blobColumn.isEmpty()) {
-      return new RepositoryDocIterable(databaseAccess, checkpoint);
+      return new RepositoryDocIterable(databaseAccess, checkpoint, checkpointRows,
+          checkpointMillis);
     } else {
-      return new RepositoryDocBlobIterable(databaseAccess, checkpoint);
+      return new RepositoryDocBlobIterable(databaseAccess, checkpoint, checkpointRows,
+          checkpointMillis);
     }
   }
 
@@ -248,6 +697,16 @@ class DatabaseRepository implements Repository {
    * <p>The instance method to be implemented in subclasses for defining the return objects is
    * {@link #createResultSetRecord(Map)}.
    *
+   * <p>If prefetch threads are configured, the records are read ahead on a separate thread and
+   * the return objects are built by a pool of worker threads, and may be returned out of order.
+   * Either way, the checkpoint is updated on the calling thread in the order of the result set.
+   *
+   * <p>If the checkpoint is resumable, the iteration ends early once the configured number of
+   * records have been returned or the configured time has passed, and {@link #hasMore} returns
+   * true so that the traversal continues from an intermediate checkpoint. The next record is
+   * read to check that the checkpoint can resume before it (see
+   * {@link Checkpoint#canResumeBefore}), and otherwise the batch continues.
+   *
    * @param <T> database record return type
    */
   private abstract static class ResultSetCloseableIterable<T>
@@ -259,12 +718,39 @@ class DatabaseRepository implements Repository {
     final Checkpoint checkpoint;
     private final boolean isPageable;
     private boolean hasMore = false;
+    private final PrefetchIterator<T> prefetchIterator;
+    private final OrderedCheckpointUpdater checkpointUpdater;
+    private final long checkpointRows;
+    private final long checkpointMillis;
+    private final long batchStartMillis = System.currentTimeMillis();
+    private long batchRows = 0;
+    private boolean batchEnded = false;
+    private boolean queryComplete = false;
+    private Predicate<Map<String, Object>> deferral;
 
-    ResultSetCloseableIterable(DatabaseAccess access, Checkpoint checkpoint) {
+    ResultSetCloseableIterable(DatabaseAccess access, Checkpoint checkpoint,
+        int prefetchThreads, int prefetchQueueSize, boolean prefetchOrdered,
+        long checkpointRows, long checkpointMillis) {
       this.access = access;
-      this.resultSetIterator = new AtomicReference<>(new ResultSetIterator());
       this.checkpoint = checkpoint;
       this.isPageable = checkpoint.isPageable();
+      boolean isResumable = checkpoint.isResumable();
+      this.checkpointRows = isResumable ? checkpointRows : 0;
+      this.checkpointMillis = isResumable ? checkpointMillis : 0;
+      if (prefetchThreads > 0) {
+        this.prefetchIterator = new PrefetchIterator<>(
+            () -> access.next() ? access.getDetachedColumnValues() : null,
+            this::createResultSetRecord,
+            prefetchThreads,
+            prefetchQueueSize,
+            prefetchOrdered);
+        this.checkpointUpdater = new OrderedCheckpointUpdater(checkpoint);
+        this.resultSetIterator = new AtomicReference<>(new PrefetchResultSetIterator());
+      } else {
+        this.prefetchIterator = null;
+        this.checkpointUpdater = null;
+        this.resultSetIterator = new AtomicReference<>(new ResultSetIterator());
+      }
     }
 
     @Override
@@ -279,6 +765,8 @@ class DatabaseRepository implements Repository {
     /**
      * Generate a repository object from the current record of the result set.
      *
+     * <p>This may be called on multiple threads at once, and must not update the checkpoint.
+     *
      * @param allColumnValues the database record key/values from the result set
      * @return repository object
      */
@@ -297,11 +785,67 @@ class DatabaseRepository implements Repository {
       return hasMore;
     }
 
+    /**
+     * Checks whether this batch has reached its size or time limit. At least one record is
+     * returned in each batch, so that the traversal always makes progress.
+     */
+    private boolean isBatchComplete() {
+      if (batchRows == 0) {
+        return false;
+      }
+      return (checkpointRows > 0 && batchRows >= checkpointRows)
+          || (checkpointMillis > 0
+              && System.currentTimeMillis() - batchStartMillis >= checkpointMillis);
+    }
+
+    /** Called when every record from the query has been returned. */
+    private void completeQuery() {
+      if (!queryComplete) {
+        queryComplete = true;
+        if (checkpoint.completeQuery()) {
+          hasMore = true;
+        }
+      }
+    }
+
+    /**
+     * Sets a test for records to defer to a later query (see {@link Checkpoint#deferRecord}).
+     * Deferred records are not returned. This must be called before iterating.
+     */
+    void setDeferral(Predicate<Map<String, Object>> deferral) {
+      this.deferral = deferral;
+    }
+
+    /** Checks whether the given record is deferred, and if so, keeps the checkpoint before it. */
+    private boolean isDeferred(Map<String, Object> allColumnValues) {
+      return deferral != null && deferral.test(allColumnValues)
+          && checkpoint.deferRecord(allColumnValues);
+    }
+
+    /**
+     * Ends this batch with an intermediate checkpoint before the given record, if possible.
+     *
+     * @param allColumnValues the next record, which is not returned if the batch ends
+     * @return whether the batch has ended
+     */
+    private boolean endBatchBefore(Map<String, Object> allColumnValues) {
+      if (checkpoint.canResumeBefore(allColumnValues)) {
+        logger.log(Level.FINE, "Ending batch with an intermediate checkpoint after {0} records",
+            batchRows);
+        batchEnded = true;
+        hasMore = true;
+      }
+      return batchEnded;
+    }
+
     /**
      * Close the result set, prepared statement and connection.
      */
     @Override
     public void close() {
+      if (prefetchIterator != null) {
+        prefetchIterator.close();
+      }
       access.close();
     }
 
@@ -317,11 +861,20 @@ class DatabaseRepository implements Repository {
         if (nextLoaded) {
           return true;
         }
+        if (batchEnded) {
+          return false;
+        }
         try {
-          nextLoaded = access.next();
-          if (nextLoaded && isPageable) {
-            hasMore = true;
-          }
+          do {
+            nextLoaded = access.next();
+            if (!nextLoaded) {
+              completeQuery();
+            } else if (isBatchComplete() && endBatchBefore(access.getAllColumnValues())) {
+              nextLoaded = false;
+            } else if (isPageable) {
+              hasMore = true;
+            }
+          } while (nextLoaded && skipDeferred());
         } catch (IOException | SQLException e) {
           logger.log(Level.WARNING, "Error getting next database record: ", e);
           nextLoaded = false;
@@ -329,11 +882,23 @@ class DatabaseRepository implements Repository {
         return nextLoaded;
       }
 
+      private boolean skipDeferred() {
+        Map<String, Object> allColumnValues = access.getAllColumnValues();
+        if (isDeferred(allColumnValues)) {
+          checkpoint.updateCheckpoint(allColumnValues);
+          return true;
+        }
+        return false;
+      }
+
       @Override
       public T next() {
         if (hasNext()) {
           try {
-            return createResultSetRecord(access.getAllColumnValues());
+            Map<String, Object> allColumnValues = access.getAllColumnValues();
+            checkpoint.updateCheckpoint(allColumnValues);
+            batchRows++;
+            return createResultSetRecord(allColumnValues);
           } finally {
             nextLoaded = false;
           }
@@ -341,6 +906,71 @@ class DatabaseRepository implements Repository {
         throw new NoSuchElementException();
       }
     }
+
+    /**
+     * Note: this iterator is not thread safe, but it uses other threads internally.
+     */
+    private class PrefetchResultSetIterator implements Iterator<T> {
+
+      boolean nextLoaded = false;
+      PrefetchIterator.Record<T> nextRecord = null;
+
+      @Override
+      public boolean hasNext() {
+        if (nextLoaded) {
+          return true;
+        }
+        if (batchEnded) {
+          return false;
+        }
+        do {
+          nextLoaded = prefetchIterator.hasNext();
+          if (!nextLoaded && prefetchIterator.isExhausted()) {
+            completeQuery();
+          }
+          if (nextLoaded && isBatchComplete()) {
+            nextRecord = prefetchIterator.next();
+            if (endBatchBefore(nextRecord.row)) {
+              nextLoaded = false;
+              nextRecord = null;
+            }
+          }
+          if (nextLoaded && isPageable) {
+            hasMore = true;
+          }
+        } while (nextLoaded && skipDeferred());
+        return nextLoaded;
+      }
+
+      private boolean skipDeferred() {
+        if (deferral == null) {
+          return false;
+        }
+        if (nextRecord == null) {
+          nextRecord = prefetchIterator.next();
+        }
+        if (isDeferred(nextRecord.row)) {
+          checkpointUpdater.complete(nextRecord.sequence, nextRecord.row);
+          nextRecord = null;
+          return true;
+        }
+        return false;
+      }
+
+      @Override
+      public T next() {
+        if (hasNext()) {
+          PrefetchIterator.Record<T> record =
+              (nextRecord == null) ? prefetchIterator.next() : nextRecord;
+          nextLoaded = false;
+          nextRecord = null;
+          checkpointUpdater.complete(record.sequence, record.row);
+          batchRows++;
+          return record.value;
+        }
+        throw new NoSuchElementException();
+      }
+    }
   }
 
   /**
@@ -349,8 +979,10 @@ class DatabaseRepository implements Repository {
    */
   private class RepositoryDocIterable extends ResultSetCloseableIterable<ApiOperation> {
 
-    RepositoryDocIterable(DatabaseAccess access, Checkpoint checkpoint) {
-      super(access, checkpoint);
+    RepositoryDocIterable(DatabaseAccess access, Checkpoint checkpoint, long checkpointRows,
+        long checkpointMillis) {
+      super(access, checkpoint, prefetchThreads, prefetchQueueSize, prefetchOrdered,
+          checkpointRows, checkpointMillis);
     }
 
     /**
@@ -361,11 +993,7 @@ class DatabaseRepository implements Repository {
      */
     @Override
     RepositoryDoc createResultSetRecord(Map<String, Object> allColumnValues) {
-      return new RepositoryDoc.Builder()
-          .setItem(createItem(allColumnValues, checkpoint))
-          .setContent(createContent(allColumnValues), ContentFormat.HTML)
-          .setRequestMode(requestMode)
-          .build();
+      return createDoc(allColumnValues);
     }
   }
 
@@ -375,8 +1003,10 @@ class DatabaseRepository implements Repository {
    */
   private class RepositoryDocBlobIterable extends ResultSetCloseableIterable<ApiOperation> {
 
-    RepositoryDocBlobIterable(DatabaseAccess access, Checkpoint checkpoint) {
-      super(access, checkpoint);
+    RepositoryDocBlobIterable(DatabaseAccess access, Checkpoint checkpoint,
+        long checkpointRows, long checkpointMillis) {
+      super(access, checkpoint, prefetchThreads, prefetchQueueSize, prefetchOrdered,
+          checkpointRows, checkpointMillis);
     }
 
     /**
@@ -388,36 +1018,393 @@ class DatabaseRepository implements Repository {
      */
     @Override
     RepositoryDoc createResultSetRecord(Map<String, Object> allColumnValues) {
-      // TODO(normang): Future: if Blob is defined content columns may be used for metadata content.
-      RepositoryDoc.Builder document =
-          new RepositoryDoc.Builder()
-              .setItem(createItem(allColumnValues, checkpoint))
-              .setRequestMode(requestMode);
-      ByteArrayContent content = createBlobContent(allColumnValues);
-      if (content != null) {
-        document.setContent(content, ContentFormat.RAW);
+      return createBlobDoc(allColumnValues);
+    }
+  }
+
+  /**
+   * This class is used for returning the records of incremental update time slices that are
+   * read in parallel (see {@link ParallelSliceIterator}) as {@link RepositoryDoc} objects.
+   *
+   * <p>The checkpoint advances to the end of the last slice in the completed prefix of slices.
+   * {@link #hasMore} returns true if every slice was completed and there are more slices before
+   * the traversal start time.
+   */
+  private class CatchUpIterable implements CheckpointCloseableIterable<ApiOperation> {
+    private final ParallelSliceIterator sliceIterator;
+    private final IncrementalCheckpoint checkpoint;
+    private final List<IncrementalCheckpoint> slices;
+    private final AtomicReference<Iterator<ApiOperation>> iterator;
+
+    CatchUpIterable(ParallelSliceIterator sliceIterator, IncrementalCheckpoint checkpoint,
+        List<IncrementalCheckpoint> slices) {
+      this.sliceIterator = sliceIterator;
+      this.checkpoint = checkpoint;
+      this.slices = slices;
+      boolean blob = !columnManager.getBlobColumn().isEmpty();
+      this.iterator = new AtomicReference<>(Iterators.transform(sliceIterator,
+          row -> blob ? createBlobDoc(row.values) : createDoc(row.values)));
+    }
+
+    @Override
+    public Iterator<ApiOperation> iterator() {
+      Iterator<ApiOperation> temp = iterator.getAndSet(null);
+      if (temp == null) {
+        throw new IllegalStateException("iterator is exhausted");
+      }
+      return temp;
+    }
+
+    @Override
+    public byte[] getCheckpoint() {
+      int completed = sliceIterator.getCompletedPrefix();
+      if (completed > 0) {
+        checkpoint.completeSlice(slices.get(completed - 1));
       }
-      return document.build();
+      return checkpoint.get();
+    }
+
+    @Override
+    public boolean hasMore() {
+      return sliceIterator.getCompletedPrefix() == slices.size()
+          && slices.get(slices.size() - 1).hasMoreSlices();
+    }
+
+    @Override
+    public void close() {
+      sliceIterator.close();
     }
   }
 
   /**
-   * Create an {@link Item} populated with the current record.
+   * Checksums of records or ranges that are recorded when the traversal checkpoint is taken,
+   * after the SDK has processed all of the records. At most as many checksums are recorded as
+   * can be kept.
+   */
+  private class PendingChecksums {
+    private long[] pending = new long[16];
+    private int pendingCount = 0;
+
+    /**
+     * Adds a checksum.
+     *
+     * @return false if no more checksums can be kept
+     */
+    boolean add(long id, long checksum) {
+      if (pendingCount / 2 >= checksumMaxItems) {
+        return false; // the earlier checksums would be evicted anyway
+      }
+      if (pendingCount == pending.length) {
+        pending = Arrays.copyOf(pending, pending.length * 2);
+      }
+      pending[pendingCount++] = id;
+      pending[pendingCount++] = checksum;
+      return true;
+    }
+
+    int size() {
+      return pendingCount / 2;
+    }
+
+    void commit() {
+      for (int i = 0; i < pendingCount; i += 2) {
+        checksums.put(pending[i], pending[i + 1]);
+      }
+      pendingCount = 0;
+    }
+  }
+
+  /**
+   * This class is used for full traversals with a checksum query when no record checksums are
+   * kept. It returns all of the records from the all records query, and records the checksums
+   * that were read before it when the checkpoint is taken.
+   */
+  private class SeededIterable implements CheckpointCloseableIterable<ApiOperation> {
+    private final CheckpointCloseableIterable<ApiOperation> delegate;
+    private final PendingChecksums pending;
+
+    SeededIterable(CheckpointCloseableIterable<ApiOperation> delegate, PendingChecksums pending) {
+      this.delegate = delegate;
+      this.pending = pending;
+    }
+
+    @Override
+    public Iterator<ApiOperation> iterator() {
+      return delegate.iterator();
+    }
+
+    @Override
+    public byte[] getCheckpoint() {
+      logger.log(Level.FINE, "Recording {0} record checksums", pending.size());
+      pending.commit();
+      return delegate.getCheckpoint();
+    }
+
+    @Override
+    public boolean hasMore() {
+      return delegate.hasMore();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+
+  /**
+   * This class is used for full traversals with a checksum query. The checksum query reads the
+   * unique key and checksum of each record, and only the records whose checksum differs from
+   * the last one sent are fetched in full and returned as {@link RepositoryDoc} objects. The
+   * records are fetched one at a time with the single record query, which is prepared once and
+   * run again for each record on the same connection.
    *
-   * <p>If the passed {@link Checkpoint} is not null, then attempt to update the last timestamp
-   * value with a newer one. This is used for incremental updates using a timestamp field.
+   * <p>With a range checksum query, the query reads an aggregate checksum of each range of
+   * records instead, and all of the records in each range whose checksum differs from the last
+   * one traversed are read with the range records query. A range's checksum is only recorded
+   * after all of its records have been read.
+   *
+   * <p>The record checksums are kept in memory when the checkpoint is taken (see
+   * {@link PendingChecksums}). The range checksums are kept in the returned checkpoint, which
+   * the SDK passes to the next full traversal.
+   */
+  private class ChecksumIterable implements CheckpointCloseableIterable<ApiOperation> {
+    private final DatabaseAccess checksumAccess;
+    private final FullCheckpoint checkpoint;
+    private final boolean ranges;
+    private final AtomicReference<Iterator<ApiOperation>> iterator;
+    private final boolean blob = !columnManager.getBlobColumn().isEmpty();
+    private final PendingChecksums pending = new PendingChecksums();
+    private final Map<String, Long> previousRanges;
+    private final Map<String, Long> rangeChecksums = new LinkedHashMap<>();
+    private final Set<String> readRanges = new HashSet<>();
+    private boolean rangesComplete = false;
+    private DatabaseAccess recordAccess;
+    private DatabaseAccess rangeAccess;
+    private long skipped = 0;
+    private long changed = 0;
+
+    /**
+     * @param checksumAccess the record or range checksum query
+     * @param checkpoint the full traversal checkpoint
+     * @param previousRanges the range checksums from the last traversal, or {@code null} if the
+     *     checksum query returns record checksums
+     */
+    ChecksumIterable(DatabaseAccess checksumAccess, FullCheckpoint checkpoint,
+        Map<String, Long> previousRanges) {
+      this.checksumAccess = checksumAccess;
+      this.checkpoint = checkpoint;
+      this.ranges = previousRanges != null;
+      this.previousRanges = previousRanges;
+      this.iterator = new AtomicReference<>(
+          ranges ? new ChangedRangeIterator() : new ChangedRecordIterator());
+    }
+
+    @Override
+    public Iterator<ApiOperation> iterator() {
+      Iterator<ApiOperation> temp = iterator.getAndSet(null);
+      if (temp == null) {
+        throw new IllegalStateException("iterator is exhausted");
+      }
+      return temp;
+    }
+
+    @Override
+    public byte[] getCheckpoint() {
+      logger.log(Level.FINE, "Skipped {0} unchanged {2}, read {1} changed {2}",
+          new Object[] {skipped, changed, ranges ? "ranges" : "records"});
+      if (ranges) {
+        if (!rangesComplete) {
+          // Keep the last checksums of the ranges that were not read.
+          for (Map.Entry<String, Long> entry : previousRanges.entrySet()) {
+            if (!readRanges.contains(entry.getKey())) {
+              putRangeChecksum(entry.getKey(), entry.getValue());
+            }
+          }
+        }
+        checkpoint.setRangeChecksums(rangeChecksums);
+      } else {
+        pending.commit();
+      }
+      skipped = 0;
+      changed = 0;
+      return checkpoint.get();
+    }
+
+    /** Records the checksum of a range, if no more than the maximum are recorded. */
+    private void putRangeChecksum(String range, long checksum) {
+      if (rangeChecksums.size() < checksumMaxItems) {
+        rangeChecksums.put(range, checksum);
+      }
+    }
+
+    @Override
+    public boolean hasMore() {
+      return false;
+    }
+
+    @Override
+    public void close() {
+      if (recordAccess != null) {
+        recordAccess.close();
+        recordAccess = null;
+      }
+      if (rangeAccess != null) {
+        rangeAccess.close();
+        rangeAccess = null;
+      }
+      checksumAccess.close();
+    }
+
+    /**
+     * Fetches a single record with the single record query.
+     *
+     * @param keyValues a record with values for the unique key columns
+     * @return the record, or {@code null} if it no longer exists
+     */
+    private Map<String, Object> fetchRecord(Map<String, Object> keyValues)
+        throws SQLException, IOException {
+      DocCheckpoint keys = new DocCheckpoint(columnManager.getUniqueKeyColumns(), keyValues);
+      if (recordAccess == null) {
+        recordAccess = new DatabaseAccess.Builder()
+            .setConnectionFactory(connectionFactory)
+            .setSql(columnManager.getSingleRecordSql())
+            .setCheckpoint(keys)
+            .setLazyColumns(columnManager.getLazySqlCols())
+            .setInternedColumns(columnManager.getInternSqlCols())
+            .build();
+      } else {
+        recordAccess.requery(keys);
+      }
+      return recordAccess.next() ? recordAccess.getAllColumnValues() : null;
+    }
+
+    /**
+     * Note: this iterator on the result set is not thread safe.
+     */
+    private class ChangedRecordIterator extends AbstractIterator<ApiOperation> {
+      @Override
+      protected ApiOperation computeNext() {
+        try {
+          while (checksumAccess.next()) {
+            Map<String, Object> keyValues = checksumAccess.getAllColumnValues();
+            long id = getChecksumId(keyValues);
+            Object value = keyValues.get(ColumnManager.CHECKSUM_COLUMN);
+            Long checksum = (value == null) ? null : toChecksum(value);
+            if (checksum != null && checksums.containsKey(id)
+                && checksums.get(id, 0) == checksum) {
+              skipped++;
+              continue;
+            }
+            Map<String, Object> allColumnValues = fetchRecord(keyValues);
+            if (allColumnValues == null) {
+              continue; // deleted since the checksum query
+            }
+            if (checksum != null) {
+              pending.add(id, checksum);
+            }
+            changed++;
+            return blob ? createBlobDoc(allColumnValues) : createDoc(allColumnValues);
+          }
+        } catch (IOException | SQLException e) {
+          logger.log(Level.WARNING, "Error getting next database record: ", e);
+        }
+        return endOfData();
+      }
+    }
+
+    /**
+     * Note: this iterator on the result sets is not thread safe.
+     */
+    private class ChangedRangeIterator extends AbstractIterator<ApiOperation> {
+      private String range;
+      private Long rangeChecksum;
+
+      @Override
+      protected ApiOperation computeNext() {
+        try {
+          while (true) {
+            if (rangeAccess != null) {
+              if (rangeAccess.next()) {
+                Map<String, Object> allColumnValues = rangeAccess.getAllColumnValues();
+                return blob ? createBlobDoc(allColumnValues) : createDoc(allColumnValues);
+              }
+              rangeAccess.close();
+              rangeAccess = null;
+              if (rangeChecksum != null) {
+                putRangeChecksum(range, rangeChecksum);
+              }
+              changed++;
+            }
+            if (!checksumAccess.next()) {
+              rangesComplete = true;
+              break;
+            }
+            Map<String, Object> rangeValues = checksumAccess.getAllColumnValues();
+            range = String.valueOf(rangeValues.get(ColumnManager.RANGE_COLUMN));
+            readRanges.add(range);
+            Object value = rangeValues.get(ColumnManager.CHECKSUM_COLUMN);
+            rangeChecksum = (value == null) ? null : toChecksum(value);
+            if (rangeChecksum != null && rangeChecksum.equals(previousRanges.get(range))) {
+              putRangeChecksum(range, rangeChecksum);
+              skipped++;
+              continue;
+            }
+            logger.log(Level.FINE, "Reading changed range {0}",
+                rangeValues.get(ColumnManager.RANGE_COLUMN));
+            rangeAccess = openRange(rangeValues);
+          }
+        } catch (IOException | SQLException e) {
+          logger.log(Level.WARNING, "Error getting next database record: ", e);
+        }
+        return endOfData();
+      }
+    }
+  }
+
+  /**
+   * Generate a {@link RepositoryDoc} from a database record.
    *
    * @param allColumnValues the database record key/values from the result set
-   * @param checkpoint the current {@link Checkpoint} object
-   * @return a fully formed {@link Item}
+   * @return repository document object
    */
-  private Item createItem(Map<String, Object> allColumnValues, Checkpoint checkpoint) {
-    if (checkpoint != null) {
-      checkpoint.updateCheckpoint(allColumnValues);
+  private RepositoryDoc createDoc(Map<String, Object> allColumnValues) {
+    return new RepositoryDoc.Builder()
+        .setItem(createItem(allColumnValues))
+        .setContent(createContent(allColumnValues), ContentFormat.HTML)
+        .setRequestMode(requestMode)
+        .build();
+  }
+
+  /**
+   * Generate a {@link RepositoryDoc} with Blob content from a database record.
+   *
+   * @param allColumnValues the database record key/values from the result set
+   * @return repository document object
+   */
+  private RepositoryDoc createBlobDoc(Map<String, Object> allColumnValues) {
+    // TODO(normang): Future: if Blob is defined content columns may be used for metadata content.
+    RepositoryDoc.Builder document =
+        new RepositoryDoc.Builder()
+            .setItem(createItem(allColumnValues))
+            .setRequestMode(requestMode);
+    ByteArrayContent content = createBlobContent(allColumnValues);
+    if (content != null) {
+      document.setContent(content, ContentFormat.RAW);
     }
+    return document.build();
+  }
 
+  /**
+   * Create an {@link Item} populated with the current record.
+   *
+   * @param allColumnValues the database record key/values from the result set
+   * @return a fully formed {@link Item}
+   */
+  private Item createItem(Map<String, Object> allColumnValues) {
     Multimap<String, Object> multiMapValues = ArrayListMultimap.create();
-    for (Map.Entry<String, Object> entry : allColumnValues.entrySet()) {
+    // Lazy columns are not used for the item metadata, so they are not read here.
+    for (Map.Entry<String, Object> entry
+        : DatabaseAccess.getEagerColumnValues(allColumnValues).entrySet()) {
       Object value = entry.getValue();
       if (value instanceof Collection) {
         multiMapValues.putAll(entry.getKey(), (Collection<?>) value);
@@ -425,13 +1412,35 @@ class DatabaseRepository implements Repository {
         multiMapValues.put(entry.getKey(), value);
       }
     }
-    return IndexingItemBuilder.fromConfiguration(
-        UniqueKey.makeUniqueId(columnManager.getUniqueKey(), allColumnValues)) // name
+    String uniqueId =
+        UniqueKey.makeUniqueId(columnManager.getUniqueKeyColumns(), allColumnValues);
+    String name = getItemName(uniqueId);
+    IndexingItemBuilder itemBuilder = (itemMetadataPlan == null)
+        ? IndexingItemBuilder.fromConfiguration(name)
+        : itemMetadataPlan.newBuilder(name);
+    Item item = itemBuilder
         .setValues(multiMapValues)
         .setAcl(columnManager.createAclIfEnabled(allColumnValues))
         .setItemType(ItemType.CONTENT_ITEM)
         .setSourceRepositoryUrl(FieldOrValue.withValue(columnManager.getViewUrl(allColumnValues)))
         .build();
+    if (columnManager.getUniqueIdFormat().equals(UniqueIdFormat.HASH)) {
+      // keep the unique key values, so that the item can be traced back to its record
+      byte[] payload = uniqueId.getBytes(UTF_8);
+      if (payload.length <= MAX_PAYLOAD_BYTES) {
+        item.encodePayload(payload);
+      } else {
+        logger.log(Level.WARNING, "Unique key of item {0} is too long for the item payload: {1}",
+            new Object[] {name, uniqueId});
+      }
+    }
+    return item;
+  }
+
+  /** Gets the item name for a unique ID, which is hashed if configured. */
+  private String getItemName(String uniqueId) {
+    boolean hashed = columnManager.getUniqueIdFormat().equals(UniqueIdFormat.HASH);
+    return hashed ? UniqueKey.hashUniqueId(uniqueId) : uniqueId;
   }
 
   /**
@@ -441,11 +1450,21 @@ class DatabaseRepository implements Repository {
    * @return the record's item content
    */
   private ByteArrayContent createContent(Map<String, Object> allColumnValues) {
+    ContentRenderer contentRenderer = columnManager.getContentRenderer();
+    if (contentRenderer != null) {
+      byte[] html = contentRenderer.render(allColumnValues);
+      if (html != null) {
+        return new ByteArrayContent("text/html", html);
+      }
+    }
     ByteArrayContent content;
-    Map<String, Object> keyValues = new HashMap<>();
-    for (String col : columnManager.getContentSqlCols()) {
-      if (allColumnValues.containsKey(col)) {
-        keyValues.put(col, allColumnValues.get(col));
+    List<String> contentColumns = columnManager.getContentColumns();
+    Map<String, Object> keyValues = Maps.newHashMapWithExpectedSize(contentColumns.size());
+    for (int i = 0; i < contentColumns.size(); i++) {
+      String col = contentColumns.get(i);
+      Object value = allColumnValues.get(col);
+      if (value != null) {
+        keyValues.put(col, value);
       }
     }
     String htmlContent = columnManager.applyContentTemplate(keyValues);
@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Parameters for a query that fetches a single record by its unique key values, or the records
+ * in one range by the range value.
+ *
+ * <p>This is not a traversal checkpoint, and is never saved. It only sets the key values as the
+ * query parameters, in the order of the key columns.
+ */
+class DocCheckpoint extends Checkpoint {
+  private final List<Object> keyValues;
+
+  /**
+   * @param keyColumns the key columns
+   * @param allColumnValues a record with values for the key columns
+   */
+  DocCheckpoint(List<String> keyColumns, Map<String, Object> allColumnValues) {
+    List<Object> values = new ArrayList<>();
+    for (String col : keyColumns) {
+      values.add(allColumnValues.get(col));
+    }
+    this.keyValues = Collections.unmodifiableList(values);
+  }
+
+  @Override
+  public void setParameters(PreparedStatement stmt, TimeZone timeZone) throws SQLException {
+    for (int i = 0; i < keyValues.size(); i++) {
+      stmt.setObject(i + 1, keyValues.get(i));
+    }
+  }
+
+  @Override
+  public void updateCheckpoint(Map<String, Object> allColumnValues) {
+  }
+
+  @Override
+  public void resetCheckpoint() {
+  }
+
+  @Override
+  public boolean isPageable() {
+    return false;
+  }
+
+  @Override
+  public boolean isResumable() {
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return "DocCheckpoint" + keyValues;
+  }
+}
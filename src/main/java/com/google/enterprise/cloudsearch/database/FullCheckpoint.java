@@ -22,7 +22,16 @@ import java.sql.SQLException;
 import java.util.Map;
 import java.util.TimeZone;
 
-/** Storage for checkpoint (pagination and related parameters) used by full traversals. */
+/**
+ * Storage for checkpoint (pagination and related parameters) used by full traversals.
+ *
+ * <p>With {@code OFFSET} pagination, the offset is the number of records that have been
+ * returned, and it is passed to the query. Only these checkpoints can resume a traversal.
+ *
+ * <p>With a range checksum query, the checkpoint also holds the checksum of each range that was
+ * read by the last full traversal, keyed by the range value, so that unchanged ranges are
+ * skipped by the next one, even after a restart.
+ */
 public class FullCheckpoint extends Checkpoint {
   static FullCheckpoint parse(byte[] payload) throws RepositoryException {
     return parse(payload, FullCheckpoint.class);
@@ -34,6 +43,9 @@ public class FullCheckpoint extends Checkpoint {
   @Key
   private long offset;
 
+  @Key
+  private Map<String, Long> rangeChecksums;
+
   public FullCheckpoint() {
     pagination = Pagination.NONE.toString();
     offset = 0;
@@ -41,7 +53,7 @@ public class FullCheckpoint extends Checkpoint {
 
   @Override
   public byte[] get() {
-    if (getPagination().equals(Pagination.OFFSET)) {
+    if (getPagination().equals(Pagination.OFFSET) || rangeChecksums != null) {
       return super.get();
     } else {
       return null;
@@ -66,6 +78,16 @@ public class FullCheckpoint extends Checkpoint {
     return offset;
   }
 
+  FullCheckpoint setRangeChecksums(Map<String, Long> rangeChecksums) {
+    this.rangeChecksums = rangeChecksums;
+    return this;
+  }
+
+  /** Gets the range checksums of the last full traversal, or {@code null} if there are none. */
+  Map<String, Long> getRangeChecksums() {
+    return rangeChecksums;
+  }
+
   @Override
   public void setParameters(PreparedStatement stmt, TimeZone timeZone) throws SQLException {
     switch (Pagination.fromString(pagination)) {
@@ -89,14 +111,21 @@ public class FullCheckpoint extends Checkpoint {
     }
   }
 
-  /** Reset the pagination to NONE, which forces a null checkpoint byte array. */
+  /** Reset the pagination to NONE and the offset to 0, which forces a null checkpoint. */
   @Override
   public void resetCheckpoint() {
     setPagination(Pagination.NONE);
+    offset = 0;
   }
 
   @Override
   public boolean isPageable() {
     return getPagination().equals(Pagination.OFFSET);
   }
+
+  /** Full traversals can resume from the offset with {@code OFFSET} pagination. */
+  @Override
+  public boolean isResumable() {
+    return isPageable();
+  }
 }
@@ -21,21 +21,57 @@ import com.google.enterprise.cloudsearch.sdk.RepositoryException;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 
-/** Storage for checkpoint (last update time) used by incremental updates. */
+/**
+ * Storage for checkpoint (last update time) used by incremental updates.
+ *
+ * <p>If the incremental update query is ordered by timestamp, the checkpoint is resumable, and
+ * a batch can end between any two records with different timestamps. The last update time is
+ * then the timestamp of the last record returned, and all of the records with that timestamp
+ * have been returned. Records without a timestamp do not advance an ordered checkpoint.
+ *
+ * <p>If the incremental update query has an upper bound, the checkpoint walks from the last
+ * update time to the traversal start time in time slices, one slice per query. The slice size
+ * is saved in the checkpoint, and halved or doubled after each query that returns more than
+ * twice or less than half of the target number of records. The last slice ends at the traversal
+ * start time, which comes from the connector's clock rather than the database's, so after the
+ * last slice the last update time is only moved to the latest timestamp that was read. A record
+ * that is committed later with an earlier timestamp, or a database clock that is behind the
+ * connector's, is then still read by the next query.
+ *
+ * <p>If a record is deferred (see {@link #deferRecord}), the last update time is kept before its
+ * timestamp for the rest of the query, so that the next query reads it again.
+ */
 public class IncrementalCheckpoint extends Checkpoint {
   static IncrementalCheckpoint parse(byte[] payload) throws RepositoryException {
     return parse(payload, IncrementalCheckpoint.class);
   }
 
+  static final long MIN_SLICE_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  static final long MAX_SLICE_MILLIS = TimeUnit.DAYS.toMillis(30);
+
   @Key
   private long lastUpdateTime;
 
+  @Key
+  private long sliceMillis;
+
   private long traversalStartTime;
 
+  private boolean ordered;
+
+  private boolean sliced;
+  private int sliceRows;
+  private long sliceEnd;
+  private long queryRows;
+  private long deferredTime = Long.MAX_VALUE;
+
   public IncrementalCheckpoint() {
   }
 
@@ -44,7 +80,7 @@ public class IncrementalCheckpoint extends Checkpoint {
   }
 
   private void setLastUpdateTime(long lastUpdateTime) {
-    this.lastUpdateTime = lastUpdateTime;
+    this.lastUpdateTime = Math.min(lastUpdateTime, deferredTime - 1);
   }
 
   @VisibleForTesting
@@ -56,9 +92,84 @@ public class IncrementalCheckpoint extends Checkpoint {
     this.traversalStartTime = traversalStartTime;
   }
 
+  /** Sets whether the records are ordered by timestamp, which makes this checkpoint resumable. */
+  void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  /**
+   * Limits the next query to a time slice after the last update time. This must be called
+   * after {@link #setTraversalStartTime}.
+   *
+   * @param initialSliceMillis the slice size to use if there is none in the checkpoint
+   * @param sliceRows the target number of records in each slice
+   */
+  void setSlices(long initialSliceMillis, int sliceRows) {
+    if (sliceMillis <= 0) {
+      sliceMillis = initialSliceMillis;
+    }
+    this.sliced = true;
+    this.sliceRows = sliceRows;
+    this.sliceEnd = Math.min(lastUpdateTime + sliceMillis, traversalStartTime);
+  }
+
+  /**
+   * Splits the time from the last update time to the traversal start time into consecutive
+   * slices, so that they can be read in parallel. This must be called after {@link #setSlices}.
+   *
+   * @param count the maximum number of slices
+   * @return a checkpoint for each slice, in order
+   */
+  List<IncrementalCheckpoint> split(int count) {
+    List<IncrementalCheckpoint> slices = new ArrayList<>();
+    long start = lastUpdateTime;
+    while (slices.size() < count && start < traversalStartTime) {
+      IncrementalCheckpoint slice = new IncrementalCheckpoint(start);
+      slice.setTraversalStartTime(traversalStartTime);
+      slice.setSlices(sliceMillis, sliceRows);
+      slices.add(slice);
+      start = slice.sliceEnd;
+    }
+    return slices;
+  }
+
+  /** Moves the last update time to the end of a slice from {@link #split}. */
+  void completeSlice(IncrementalCheckpoint slice) {
+    long completedTime = slice.getCompletedTime();
+    if (completedTime > lastUpdateTime) {
+      setLastUpdateTime(completedTime);
+    }
+  }
+
+  /**
+   * Gets the time that the last update time moves to when the slice has been read: the end of
+   * the slice, or the latest timestamp read from the last slice.
+   */
+  private long getCompletedTime() {
+    return (sliceEnd < traversalStartTime) ? Math.min(sliceEnd, deferredTime - 1) : lastUpdateTime;
+  }
+
+  /** Gets the time between the last update time and the traversal start time. */
+  long getLagMillis() {
+    return traversalStartTime - lastUpdateTime;
+  }
+
+  /** Whether there are more slices after this one, before the traversal start time. */
+  boolean hasMoreSlices() {
+    return sliced && sliceEnd < traversalStartTime;
+  }
+
+  @VisibleForTesting
+  long getSliceMillis() {
+    return sliceMillis;
+  }
+
   @Override
   public void setParameters(PreparedStatement stmt, TimeZone timeZone) throws SQLException {
     stmt.setTimestamp(1, new Timestamp(lastUpdateTime), Calendar.getInstance(timeZone));
+    if (sliced) {
+      stmt.setTimestamp(2, new Timestamp(sliceEnd), Calendar.getInstance(timeZone));
+    }
   }
 
   /**
@@ -68,9 +179,13 @@ public class IncrementalCheckpoint extends Checkpoint {
    */
   @Override
   public void updateCheckpoint(Map<String, Object> allColumnValues) {
+    queryRows++;
     long recordTimestamp;
     Object recordValue = allColumnValues.get(ColumnManager.TIMESTAMP_COLUMN);
     if (recordValue == null) {
+      if (ordered || sliced) {
+        return;
+      }
       recordTimestamp = traversalStartTime;
     } else {
       recordTimestamp = ((Timestamp) recordValue).getTime();
@@ -80,6 +195,39 @@ public class IncrementalCheckpoint extends Checkpoint {
     }
   }
 
+  /** Keeps the last update time before the timestamp of the given record. */
+  @Override
+  public boolean deferRecord(Map<String, Object> allColumnValues) {
+    Object recordValue = allColumnValues.get(ColumnManager.TIMESTAMP_COLUMN);
+    if (recordValue == null) {
+      return false;
+    }
+    deferredTime = Math.min(deferredTime, ((Timestamp) recordValue).getTime());
+    setLastUpdateTime(lastUpdateTime);
+    return true;
+  }
+
+  /**
+   * Moves the last update time to the end of the time slice, unless it is the last slice, and
+   * adjusts the slice size for the next query.
+   */
+  @Override
+  public boolean completeQuery() {
+    if (!sliced) {
+      return false;
+    }
+    long completedTime = getCompletedTime();
+    if (completedTime > lastUpdateTime) {
+      setLastUpdateTime(completedTime);
+    }
+    if (queryRows > 2L * sliceRows) {
+      sliceMillis = Math.max(sliceMillis / 2, MIN_SLICE_MILLIS);
+    } else if (queryRows < sliceRows / 2) {
+      sliceMillis = Math.min(sliceMillis * 2, MAX_SLICE_MILLIS);
+    }
+    return hasMoreSlices();
+  }
+
   /** Incremental checkpoints are persistent across traversals. */
   @Override
   public void resetCheckpoint() {
@@ -89,4 +237,16 @@ public class IncrementalCheckpoint extends Checkpoint {
   public boolean isPageable() {
     return false;
   }
+
+  @Override
+  public boolean isResumable() {
+    return ordered;
+  }
+
+  /** A batch can end before a record with a later timestamp than the last record returned. */
+  @Override
+  public boolean canResumeBefore(Map<String, Object> allColumnValues) {
+    Object recordValue = allColumnValues.get(ColumnManager.TIMESTAMP_COLUMN);
+    return recordValue == null || ((Timestamp) recordValue).getTime() > getLastUpdateTime();
+  }
 }
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import com.google.api.client.util.DateTime;
+import com.google.api.services.cloudsearch.v1.model.Item;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Multimap;
+import com.google.enterprise.cloudsearch.sdk.config.Configuration;
+import com.google.enterprise.cloudsearch.sdk.indexing.IndexingItemBuilder;
+import com.google.enterprise.cloudsearch.sdk.indexing.IndexingItemBuilder.FieldOrValue;
+import com.google.enterprise.cloudsearch.sdk.indexing.IndexingItemBuilder.ItemType;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates {@link IndexingItemBuilder} objects with the configured item metadata.
+ *
+ * <p>{@link IndexingItemBuilder#fromConfiguration} reads the {@code itemMetadata.*} configuration
+ * every time it is called. This class reads the configuration once, and keeps a list of steps that
+ * set each configured metadata property on a new builder, using shared {@link FieldOrValue}
+ * objects.
+ *
+ * <p>Only metadata properties that are configured with either a field or a default value are
+ * supported. The plan is checked against {@link IndexingItemBuilder#fromConfiguration} when it is
+ * compiled, and {@link #compile} returns {@code null} if the configuration is not supported or
+ * the items differ, in which case callers use {@code fromConfiguration} as before.
+ *
+ * <p>Note: this class is immutable and thread safe.
+ */
+class ItemMetadataPlan {
+  private static final Logger log = Logger.getLogger(ItemMetadataPlan.class.getName());
+
+  private static final String PREFIX = "itemMetadata.";
+  private static final String FIELD = ".field";
+  private static final String DEFAULT_VALUE = ".defaultValue";
+
+  private static final String PROBE_NAME = "item-metadata-plan-probe";
+  private static final Timestamp PROBE_TIME = new Timestamp(1500000000000L);
+
+  /** Configuration keys that the plan does not support. */
+  private static final ImmutableList<String> UNSUPPORTED_KEYS = ImmutableList.of(
+      IndexingItemBuilder.OBJECT_TYPE,
+      PREFIX + "updateTime" + DEFAULT_VALUE,
+      PREFIX + "createTime" + DEFAULT_VALUE,
+      PREFIX + "hash" + FIELD,
+      PREFIX + "hash" + DEFAULT_VALUE,
+      PREFIX + "containerName" + FIELD,
+      PREFIX + "containerName" + DEFAULT_VALUE,
+      PREFIX + "searchQualityMetadata.quality" + FIELD,
+      PREFIX + "searchQualityMetadata.quality" + DEFAULT_VALUE);
+
+  /** A metadata property and the builder method that sets it. */
+  private static class Property<T> {
+    final String name;
+    final BiConsumer<IndexingItemBuilder, FieldOrValue<T>> setter;
+    final boolean isTime;
+
+    Property(String name, BiConsumer<IndexingItemBuilder, FieldOrValue<T>> setter,
+        boolean isTime) {
+      this.name = name;
+      this.setter = setter;
+      this.isTime = isTime;
+    }
+  }
+
+  private static final ImmutableList<Property<?>> PROPERTIES = ImmutableList.of(
+      new Property<String>("title", IndexingItemBuilder::setTitle, false),
+      new Property<String>("sourceRepositoryUrl", IndexingItemBuilder::setSourceRepositoryUrl,
+          false),
+      new Property<String>("contentLanguage", IndexingItemBuilder::setContentLanguage, false),
+      new Property<String>("mimeType", IndexingItemBuilder::setMimeType, false),
+      new Property<String>("objectType", IndexingItemBuilder::setObjectType, false),
+      new Property<DateTime>("updateTime", IndexingItemBuilder::setUpdateTime, true),
+      new Property<DateTime>("createTime", IndexingItemBuilder::setCreateTime, true));
+
+  private final ImmutableList<Consumer<IndexingItemBuilder>> steps;
+
+  private ItemMetadataPlan(List<Consumer<IndexingItemBuilder>> steps) {
+    this.steps = ImmutableList.copyOf(steps);
+  }
+
+  /**
+   * Compiles the item metadata configuration.
+   *
+   * @return the plan, or {@code null} if the configuration must be read by
+   *     {@link IndexingItemBuilder#fromConfiguration}
+   */
+  static ItemMetadataPlan compile() {
+    for (String key : UNSUPPORTED_KEYS) {
+      if (!Configuration.getString(key, "").get().isEmpty()) {
+        log.log(Level.WARNING, "Item metadata cannot be compiled with {0}, using it directly.",
+            key);
+        return null;
+      }
+    }
+    List<Consumer<IndexingItemBuilder>> steps = new ArrayList<>();
+    Multimap<String, Object> probeValues = ArrayListMultimap.create();
+    for (Property<?> property : PROPERTIES) {
+      String field = Configuration.getString(PREFIX + property.name + FIELD, "").get();
+      String value = Configuration.getString(PREFIX + property.name + DEFAULT_VALUE, "").get();
+      if (!field.isEmpty() && !value.isEmpty()) {
+        log.log(Level.WARNING, "Item metadata cannot be compiled with both a field and a default"
+            + " value for {0}, using it directly.", property.name);
+        return null;
+      }
+      if (!field.isEmpty()) {
+        steps.add(step(property, FieldOrValue.withField(field)));
+        probeValues.put(field, property.isTime ? PROBE_TIME : "probe-" + field);
+      } else if (!value.isEmpty()) {
+        steps.add(step(property, FieldOrValue.withValue(value)));
+      }
+    }
+    ItemMetadataPlan plan = new ItemMetadataPlan(steps);
+    try {
+      if (!plan.matchesConfiguration(probeValues)) {
+        log.log(Level.WARNING, "Item metadata cannot be compiled, using it directly.");
+        return null;
+      }
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "Item metadata cannot be compiled, using it directly.", e);
+      return null;
+    }
+    log.log(Level.CONFIG, "Compiled item metadata: {0} properties", steps.size());
+    return plan;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <T> Consumer<IndexingItemBuilder> step(Property<T> property,
+      FieldOrValue<?> fieldOrValue) {
+    return builder -> property.setter.accept(builder, (FieldOrValue<T>) fieldOrValue);
+  }
+
+  /** Checks that the plan builds the same item as the configuration, for a sample record. */
+  private boolean matchesConfiguration(Multimap<String, Object> values) {
+    Item expected = IndexingItemBuilder.fromConfiguration(PROBE_NAME)
+        .setValues(values)
+        .setItemType(ItemType.CONTENT_ITEM)
+        .build();
+    Item actual = newBuilder(PROBE_NAME)
+        .setValues(values)
+        .setItemType(ItemType.CONTENT_ITEM)
+        .build();
+    return expected.equals(actual);
+  }
+
+  /**
+   * Creates an item builder with the configured item metadata.
+   *
+   * @param name the item name
+   * @return the same builder as {@code IndexingItemBuilder.fromConfiguration(name)}
+   */
+  IndexingItemBuilder newBuilder(String name) {
+    IndexingItemBuilder builder = new IndexingItemBuilder(name);
+    for (Consumer<IndexingItemBuilder> step : steps) {
+      step.accept(builder);
+    }
+    return builder;
+  }
+}
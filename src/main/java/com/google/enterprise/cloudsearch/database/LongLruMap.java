@@ -0,0 +1,166 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A bounded map from {@code long} keys to {@code long} values, which evicts the least recently
+ * used entry when it is full.
+ *
+ * <p>The entries are stored in primitive arrays, with an open addressing hash table and a
+ * linked list in least recently used order, so each entry takes about 40 bytes and no objects
+ * are allocated after construction. The keys are expected to be well distributed, such as
+ * hashes.
+ *
+ * <p>Note: this class is not thread safe.
+ */
+class LongLruMap {
+  static final int MAX_CAPACITY = 1 << 28;
+
+  private static final int NONE = -1;
+
+  private final long[] keys;
+  private final long[] values;
+  private final int[] newer;
+  private final int[] older;
+  /** Entry index plus one for each slot, or 0 for an empty slot. */
+  private final int[] table;
+  private final int mask;
+
+  private int size = 0;
+  private int newest = NONE;
+  private int oldest = NONE;
+
+  /** @param capacity the maximum number of entries in the map */
+  LongLruMap(int capacity) {
+    checkArgument(capacity > 0 && capacity <= MAX_CAPACITY,
+        "Capacity must be between 1 and %s: %s", MAX_CAPACITY, capacity);
+    keys = new long[capacity];
+    values = new long[capacity];
+    newer = new int[capacity];
+    older = new int[capacity];
+    // Between two and four times the capacity, to keep the probe sequences short.
+    table = new int[Integer.highestOneBit(capacity) << 2];
+    mask = table.length - 1;
+  }
+
+  /**
+   * Gets the value for a key, without changing its position in the least recently used order.
+   *
+   * @param key the key
+   * @param defaultValue the value to return if the key is not in the map
+   * @return the value for the key, or the default value
+   */
+  long get(long key, long defaultValue) {
+    int entry = table[find(key)] - 1;
+    return (entry == NONE) ? defaultValue : values[entry];
+  }
+
+  boolean containsKey(long key) {
+    return table[find(key)] != 0;
+  }
+
+  /**
+   * Adds or updates an entry, and marks it as the most recently used.
+   *
+   * @param key the key
+   * @param value the value
+   */
+  void put(long key, long value) {
+    int slot = find(key);
+    int entry = table[slot] - 1;
+    if (entry != NONE) {
+      unlink(entry);
+    } else {
+      if (size < keys.length) {
+        entry = size++;
+      } else {
+        entry = oldest;
+        unlink(entry);
+        removeFromTable(entry);
+        slot = find(key);
+      }
+      keys[entry] = key;
+      table[slot] = entry + 1;
+    }
+    values[entry] = value;
+    linkNewest(entry);
+  }
+
+  int size() {
+    return size;
+  }
+
+  int capacity() {
+    return keys.length;
+  }
+
+  /** Finds the slot with the given key, or the empty slot where it belongs. */
+  private int find(long key) {
+    int slot = home(key);
+    while (table[slot] != 0 && keys[table[slot] - 1] != key) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private int home(long key) {
+    return Long.hashCode(key) & mask;
+  }
+
+  /**
+   * Removes an entry from the hash table, shifting later entries in the probe sequence back to
+   * fill the gap, so that no tombstones are needed.
+   */
+  private void removeFromTable(int entry) {
+    int hole = find(keys[entry]);
+    table[hole] = 0;
+    for (int slot = (hole + 1) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+      int home = home(keys[table[slot] - 1]);
+      // The entry can move to the hole if the hole is between its home slot and its slot.
+      if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+        table[hole] = table[slot];
+        table[slot] = 0;
+        hole = slot;
+      }
+    }
+  }
+
+  private void unlink(int entry) {
+    if (older[entry] != NONE) {
+      newer[older[entry]] = newer[entry];
+    } else {
+      oldest = newer[entry];
+    }
+    if (newer[entry] != NONE) {
+      older[newer[entry]] = older[entry];
+    } else {
+      newest = older[entry];
+    }
+  }
+
+  private void linkNewest(int entry) {
+    older[entry] = newest;
+    newer[entry] = NONE;
+    if (newest != NONE) {
+      newer[newest] = entry;
+    } else {
+      oldest = entry;
+    }
+    newest = entry;
+  }
+}
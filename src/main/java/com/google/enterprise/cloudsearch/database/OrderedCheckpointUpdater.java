@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Applies checkpoint updates in result set order when records are completed out of order.
+ *
+ * <p>Each record is identified by its zero-based sequence number in the result set. The
+ * checkpoint is only advanced over the contiguous prefix of completed records, so a checkpoint
+ * taken at any time never skips a record that has not been returned yet.
+ *
+ * <p>Note: this class is not thread safe.
+ */
+class OrderedCheckpointUpdater {
+  private final Checkpoint checkpoint;
+  private final Map<Long, Map<String, Object>> pending = new HashMap<>();
+  private long nextSequence = 0;
+
+  OrderedCheckpointUpdater(Checkpoint checkpoint) {
+    this.checkpoint = checkNotNull(checkpoint, "Checkpoint cannot be null.");
+  }
+
+  /**
+   * Marks a record as completed.
+   *
+   * @param sequence the record's sequence number in the result set
+   * @param allColumnValues the database record key/values from the result set
+   */
+  void complete(long sequence, Map<String, Object> allColumnValues) {
+    checkArgument(sequence >= nextSequence && !pending.containsKey(sequence),
+        "Record %s was already completed", sequence);
+    pending.put(sequence, allColumnValues);
+    Map<String, Object> values;
+    while ((values = pending.remove(nextSequence)) != null) {
+      checkpoint.updateCheckpoint(values);
+      nextSequence++;
+    }
+  }
+
+  /** Gets the number of records that have been applied to the checkpoint. */
+  long getCommittedCount() {
+    return nextSequence;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Iterator that reads the records of several queries at once, each on its own connection.
+ *
+ * <p>This is used to run the incremental update query for consecutive time slices in parallel.
+ * Each slice is read by a task on a {@link BlockingThreads} executor, and the records of all of
+ * the slices are returned in the order that they are read, so records from different slices are
+ * interleaved. At most {@code queueSize} records are read ahead of the consumer.
+ *
+ * <p>A slice is completed when all of its records have been returned, and the query did not
+ * fail. {@link #getCompletedPrefix()} returns the number of leading slices that are completed, so
+ * that the checkpoint only advances over slices with no gaps before them.
+ *
+ * <p>Note: this iterator is not thread safe and must be consumed from a single thread.
+ */
+class ParallelSliceIterator implements Iterator<ParallelSliceIterator.Row>, AutoCloseable {
+  private static final Logger logger = Logger.getLogger(ParallelSliceIterator.class.getName());
+
+  /** A record and the slice that it belongs to. */
+  static class Row {
+    final int slice;
+    final Map<String, Object> values;
+    final boolean failed;
+
+    private Row(int slice, Map<String, Object> values, boolean failed) {
+      this.slice = slice;
+      this.values = values;
+      this.failed = failed;
+    }
+  }
+
+  private final ImmutableList<Callable<DatabaseAccess>> slices;
+  private final int threads;
+  private final BlockingQueue<Row> queue;
+  private final boolean[] completed;
+
+  private ExecutorService executor;
+  private int finished = 0;
+  private int completedPrefix = 0;
+  private Row next;
+
+  /**
+   * @param slices opens the query for each slice; called on the reader threads
+   * @param threads the maximum number of slices that are read at once
+   * @param queueSize the maximum number of records that are read ahead
+   */
+  ParallelSliceIterator(List<Callable<DatabaseAccess>> slices, int threads, int queueSize) {
+    checkNotNull(slices, "Slices cannot be null.");
+    checkArgument(threads > 0, "Threads must be positive: %s", threads);
+    checkArgument(queueSize > 0, "Queue size must be positive: %s", queueSize);
+    this.slices = ImmutableList.copyOf(slices);
+    this.threads = threads;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.completed = new boolean[slices.size()];
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next != null) {
+      return true;
+    }
+    if (executor == null) {
+      start();
+    }
+    try {
+      while (finished < slices.size()) {
+        Row row = queue.take();
+        if (row.values != null) {
+          next = row;
+          return true;
+        }
+        // The end of a slice is queued after its records, so they have all been returned.
+        finished++;
+        completed[row.slice] = !row.failed;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    close();
+    return false;
+  }
+
+  @Override
+  public Row next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Row current = next;
+    next = null;
+    return current;
+  }
+
+  /** Gets the number of leading slices whose records have all been returned. */
+  int getCompletedPrefix() {
+    while (completedPrefix < completed.length && completed[completedPrefix]) {
+      completedPrefix++;
+    }
+    return completedPrefix;
+  }
+
+  private void start() {
+    executor = BlockingThreads.newExecutor("database-slice-reader-%d", threads);
+    for (int i = 0; i < slices.size(); i++) {
+      int slice = i;
+      executor.execute(() -> readSlice(slice));
+    }
+  }
+
+  private void readSlice(int slice) {
+    boolean failed = true;
+    try (DatabaseAccess access = slices.get(slice).call()) {
+      while (access.next()) {
+        queue.put(new Row(slice, access.getDetachedColumnValues(), false));
+      }
+      failed = false;
+    } catch (InterruptedException e) {
+      return; // closed by the consumer
+    } catch (Exception e) {
+      logger.log(Level.WARNING, "Error reading slice " + slice + ": ", e);
+    }
+    try {
+      queue.put(new Row(slice, null, failed));
+    } catch (InterruptedException e) {
+      // closed by the consumer
+    }
+  }
+
+  /**
+   * Stops the reader threads.
+   *
+   * <p>This waits for each reader to finish its current database call and close its connection.
+   */
+  @Override
+  public void close() {
+    if (executor == null) {
+      return;
+    }
+    executor.shutdownNow();
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.enterprise.cloudsearch.sdk.CheckpointCloseableIterable;
+import java.util.Iterator;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decides when incremental updates query the database, based on the observed changes.
+ *
+ * <p>The SDK calls for incremental updates on a fixed schedule, which is the fastest that the
+ * database is polled. After each poll that finds changes, the next scheduled call polls again.
+ * After each poll that finds none, the interval before the next poll doubles, from
+ * {@link #MIN_INTERVAL_MILLIS} up to the configured maximum, and the scheduled calls in between
+ * skip the query. A poll that ends with more changes to read is always followed immediately.
+ *
+ * <p>The change rate (an exponentially weighted average, in records per second) and the
+ * duration of the last poll are tracked and logged.
+ *
+ * <p>Note: this class is thread safe.
+ */
+class PollScheduler {
+  private static final Logger logger = Logger.getLogger(PollScheduler.class.getName());
+
+  static final long MIN_INTERVAL_MILLIS = 1000;
+
+  /** The weight of the latest poll in the average change rate. */
+  private static final double RATE_WEIGHT = 0.3;
+
+  private final long maxIntervalMillis;
+  private final LongSupplier clock;
+
+  private long intervalMillis = 0;
+  private long nextPollTime = Long.MIN_VALUE;
+  private long lastPollStart = -1;
+  private double changeRate = 0;
+  private long lastLatencyMillis = 0;
+
+  /**
+   * @param maxIntervalMillis the longest interval between polls
+   * @param clock the current time in milliseconds
+   */
+  PollScheduler(long maxIntervalMillis, LongSupplier clock) {
+    checkArgument(maxIntervalMillis >= MIN_INTERVAL_MILLIS,
+        "Maximum interval must be at least %s ms: %s", MIN_INTERVAL_MILLIS, maxIntervalMillis);
+    this.maxIntervalMillis = maxIntervalMillis;
+    this.clock = checkNotNull(clock, "Clock cannot be null.");
+  }
+
+  /** Checks whether the database should be polled now. */
+  synchronized boolean isPollDue() {
+    return clock.getAsLong() >= nextPollTime;
+  }
+
+  /**
+   * Tracks a poll, so that its statistics are recorded when it is closed.
+   *
+   * @param iterable the changes returned by the poll
+   * @return an iterable that forwards to the given one
+   */
+  <T> CheckpointCloseableIterable<T> track(CheckpointCloseableIterable<T> iterable) {
+    return new TrackedIterable<>(iterable, clock.getAsLong());
+  }
+
+  /**
+   * Records the result of a poll and schedules the next one.
+   *
+   * @param start the time the poll started
+   * @param end the time the poll ended
+   * @param rows the number of changed records that were returned
+   * @param hasMore whether there are more changes to read right away
+   */
+  synchronized void recordPoll(long start, long end, long rows, boolean hasMore) {
+    if (lastPollStart >= 0 && start > lastPollStart) {
+      double rate = rows * 1000.0 / (start - lastPollStart);
+      changeRate = RATE_WEIGHT * rate + (1 - RATE_WEIGHT) * changeRate;
+    }
+    lastPollStart = start;
+    lastLatencyMillis = end - start;
+    if (rows > 0 || hasMore) {
+      intervalMillis = 0;
+    } else {
+      intervalMillis = Math.min(Math.max(intervalMillis * 2, MIN_INTERVAL_MILLIS),
+          maxIntervalMillis);
+    }
+    nextPollTime = hasMore ? Long.MIN_VALUE : end + intervalMillis;
+    logger.log(Level.FINE, "Polled {0} changes in {1} ms; change rate: {2}/s; next poll in {3} ms",
+        new Object[] {rows, lastLatencyMillis, changeRate, intervalMillis});
+  }
+
+  synchronized long getIntervalMillis() {
+    return intervalMillis;
+  }
+
+  synchronized double getChangeRate() {
+    return changeRate;
+  }
+
+  synchronized long getLastLatencyMillis() {
+    return lastLatencyMillis;
+  }
+
+  /** Counts the records returned by a poll, and records the poll when it is closed. */
+  private class TrackedIterable<T> implements CheckpointCloseableIterable<T> {
+    private final CheckpointCloseableIterable<T> delegate;
+    private final long start;
+    private long rows = 0;
+    private boolean closed = false;
+
+    TrackedIterable(CheckpointCloseableIterable<T> delegate, long start) {
+      this.delegate = delegate;
+      this.start = start;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+      Iterator<T> iterator = delegate.iterator();
+      return new Iterator<T>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+          T next = iterator.next();
+          rows++;
+          return next;
+        }
+      };
+    }
+
+    @Override
+    public byte[] getCheckpoint() {
+      return delegate.getCheckpoint();
+    }
+
+    @Override
+    public boolean hasMore() {
+      return delegate.hasMore();
+    }
+
+    @Override
+    public void close() {
+      if (!closed) {
+        closed = true;
+        recordPoll(start, clock.getAsLong(), rows, delegate.hasMore());
+      }
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Throwables;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Iterator that overlaps reading database records with building the repository objects.
+ *
+ * <p>A reader thread (see {@link BlockingThreads}) pulls records from a {@link RowSource} and
+ * submits each one to a {@link ForkJoinPool} that runs the record factory. At most
+ * {@code queueSize} records are in flight between the reader and the consumer.
+ *
+ * <p>In ordered mode, the consumer receives the results in the same order as the records were
+ * read. In unordered mode, results are returned as soon as they are built. Either way, each
+ * result carries its record and its sequence number in the result set, so that checkpoint updates
+ * can be applied in order on the consuming thread (see {@link OrderedCheckpointUpdater}).
+ *
+ * <p>Threads are started on the first call to {@link #hasNext()}, and stopped when the records
+ * are exhausted or the iterator is closed.
+ *
+ * <p>Note: this iterator is not thread safe and must be consumed from a single thread.
+ *
+ * @param <T> the repository object type
+ */
+class PrefetchIterator<T> implements Iterator<PrefetchIterator.Record<T>>, AutoCloseable {
+  private static final Logger logger = Logger.getLogger(PrefetchIterator.class.getName());
+
+  private static final AtomicInteger READER_THREAD_COUNT = new AtomicInteger();
+  private static final ForkJoinWorkerThreadFactory WORKER_THREAD_FACTORY =
+      pool -> {
+        ForkJoinWorkerThread thread =
+            ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("database-prefetch-worker-" + thread.getPoolIndex());
+        return thread;
+      };
+
+  /** A source of database records, such as {@link DatabaseAccess}. */
+  interface RowSource {
+    /**
+     * Reads the next record.
+     *
+     * @return the record values, which must remain valid after the next call, or {@code null} if
+     *     there are no more records
+     */
+    Map<String, Object> nextRow() throws SQLException, IOException;
+  }
+
+  /** A database record and the repository object built from it. */
+  static class Record<T> {
+    final long sequence;
+    final Map<String, Object> row;
+    final T value;
+
+    Record(long sequence, Map<String, Object> row, T value) {
+      this.sequence = sequence;
+      this.row = row;
+      this.value = value;
+    }
+  }
+
+  /** An entry in the result queue. */
+  private interface Slot<T> {
+    Record<T> get() throws ExecutionException, InterruptedException;
+  }
+
+  /** Marks the end of the records in the queue. */
+  private static final Slot<?> END = () -> null;
+
+  private final RowSource source;
+  private final Function<Map<String, Object>, T> recordFactory;
+  private final int workerThreads;
+  private final boolean ordered;
+  private final Semaphore inFlight;
+  private final BlockingQueue<Slot<T>> queue = new LinkedBlockingQueue<>();
+
+  private ForkJoinPool workers;
+  private Thread reader;
+  private volatile long submitted = 0;
+  private long consumed = 0;
+  private boolean endOfRows = false;
+  private Slot<T> next;
+  private volatile boolean done = false;
+  private volatile boolean readFailed = false;
+
+  /**
+   * @param source the database records
+   * @param recordFactory builds a repository object from a record; called on worker threads
+   * @param workerThreads the parallelism of the worker pool
+   * @param queueSize the maximum number of records read ahead of the consumer
+   * @param ordered {@code true} to return the results in result set order
+   */
+  PrefetchIterator(RowSource source, Function<Map<String, Object>, T> recordFactory,
+      int workerThreads, int queueSize, boolean ordered) {
+    checkArgument(workerThreads > 0, "The number of worker threads must be positive.");
+    checkArgument(queueSize > 0, "The queue size must be positive.");
+    this.source = checkNotNull(source, "Row source cannot be null.");
+    this.recordFactory = checkNotNull(recordFactory, "Record factory cannot be null.");
+    this.workerThreads = workerThreads;
+    this.ordered = ordered;
+    this.inFlight = new Semaphore(queueSize);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next != null) {
+      return true;
+    }
+    if (done) {
+      return false;
+    }
+    if (reader == null) {
+      start();
+    }
+    try {
+      while (!(endOfRows && consumed == submitted)) {
+        Slot<T> slot = queue.take();
+        if (slot == END) {
+          endOfRows = true;
+        } else {
+          next = slot;
+          return true;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    close();
+    return false;
+  }
+
+  /**
+   * Returns the next record and its repository object.
+   *
+   * @throws RuntimeException the exception thrown by the record factory, if any
+   */
+  @Override
+  public Record<T> next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    Slot<T> current = next;
+    next = null;
+    consumed++;
+    inFlight.release();
+    try {
+      return current.get();
+    } catch (ExecutionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new RuntimeException(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while building a record", e);
+    }
+  }
+
+  /**
+   * Checks whether every record has been read from the source and returned, without errors.
+   * This is only meaningful after {@link #hasNext()} returns false.
+   */
+  boolean isExhausted() {
+    return endOfRows && consumed == submitted && !readFailed;
+  }
+
+  private void start() {
+    workers = new ForkJoinPool(workerThreads, WORKER_THREAD_FACTORY, null, true);
+    reader = BlockingThreads.newThread(
+        "database-prefetch-reader-" + READER_THREAD_COUNT.getAndIncrement(), this::readRows);
+    reader.start();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void readRows() {
+    try {
+      Map<String, Object> row;
+      while (!Thread.currentThread().isInterrupted() && (row = source.nextRow()) != null) {
+        inFlight.acquire();
+        submit(submitted, row);
+        submitted++;
+      }
+    } catch (IOException | SQLException | RuntimeException e) {
+      readFailed = true;
+      if (!done) {
+        logger.log(Level.WARNING, "Error getting next database record: ", e);
+      }
+    } catch (InterruptedException e) {
+      return; // closed by the consumer
+    }
+    queue.add((Slot<T>) END);
+  }
+
+  private void submit(long sequence, Map<String, Object> row) {
+    if (ordered) {
+      Future<T> future = workers.submit(() -> recordFactory.apply(row));
+      queue.add(() -> new Record<>(sequence, row, future.get()));
+    } else {
+      workers.execute(() -> {
+        Slot<T> slot;
+        try {
+          Record<T> record = new Record<>(sequence, row, recordFactory.apply(row));
+          slot = () -> record;
+        } catch (RuntimeException | Error e) {
+          slot = () -> {
+            throw new ExecutionException(e);
+          };
+        }
+        queue.add(slot);
+      });
+    }
+  }
+
+  /**
+   * Stops the reader and worker threads.
+   *
+   * <p>This waits for the reader thread to finish its current database call, so that the
+   * caller can safely close the result set afterwards.
+   */
+  @Override
+  public void close() {
+    done = true;
+    if (reader == null) {
+      return;
+    }
+    reader.interrupt();
+    workers.shutdownNow();
+    queue.clear();
+    boolean interrupted = false;
+    while (reader.isAlive()) {
+      try {
+        reader.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.api.client.http.AbstractInputStreamContent;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.common.collect.Iterators;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.enterprise.cloudsearch.sdk.CheckpointCloseableIterable;
+import com.google.enterprise.cloudsearch.sdk.indexing.template.ApiOperation;
+import com.google.enterprise.cloudsearch.sdk.indexing.template.RepositoryDoc;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded cache of the items most recently sent by incremental updates, used to skip items
+ * that are read again without any changes.
+ *
+ * <p>An incremental update query with an inclusive lower bound ({@code >=}) reads the records
+ * with the checkpoint timestamp again on every poll. Each item sent is recorded as a 64-bit hash
+ * of its name and a 64-bit fingerprint of its metadata and content, and an item whose
+ * fingerprint matches the cached one is not sent again.
+ *
+ * <p>The entries are stored in a {@link LongLruMap}, so each takes about 40 bytes, and the
+ * least recently used entry is evicted when the cache is full.
+ *
+ * <p>The items of a poll are only recorded when its checkpoint is taken, after the SDK has
+ * processed all of them, so that a failed poll is sent again in full. The cache is not
+ * persistent, and is empty after a restart.
+ *
+ * <p>Note: this class is thread safe.
+ */
+class RecentItemCache {
+  private static final Logger logger = Logger.getLogger(RecentItemCache.class.getName());
+
+  private static final JsonFactory JSON_FACTORY = JacksonFactory.getDefaultInstance();
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private final LongLruMap fingerprints;
+
+  /** @param capacity the maximum number of items in the cache */
+  RecentItemCache(int capacity) {
+    fingerprints = new LongLruMap(capacity);
+  }
+
+  /**
+   * Filters out the unchanged items from the changes returned by a poll.
+   *
+   * @param iterable the changes returned by the poll
+   * @return an iterable that skips the items that are in the cache with the same fingerprint
+   */
+  CheckpointCloseableIterable<ApiOperation> filter(
+      CheckpointCloseableIterable<ApiOperation> iterable) {
+    return new FilteredIterable(iterable);
+  }
+
+  /**
+   * Checks whether an item is in the cache with the given fingerprint.
+   *
+   * @param id the hash of the item name
+   * @param fingerprint the fingerprint of the item
+   * @return true if the item is cached with this fingerprint
+   */
+  synchronized boolean contains(long id, long fingerprint) {
+    return fingerprints.containsKey(id) && fingerprints.get(id, 0) == fingerprint;
+  }
+
+  /**
+   * Adds or updates an item, and marks it as the most recently used.
+   *
+   * @param id the hash of the item name
+   * @param fingerprint the fingerprint of the item
+   */
+  synchronized void put(long id, long fingerprint) {
+    fingerprints.put(id, fingerprint);
+  }
+
+  synchronized int size() {
+    return fingerprints.size();
+  }
+
+  /** Gets the 64-bit hash of an item name. */
+  static long hashName(String name) {
+    return HASH_FUNCTION.hashString(name, UTF_8).asLong();
+  }
+
+  /**
+   * Gets the 64-bit fingerprint of the item and content of a document.
+   *
+   * @return the fingerprint, or {@code null} if the document cannot be fingerprinted
+   */
+  static Long fingerprint(RepositoryDoc doc) {
+    Hasher hasher = HASH_FUNCTION.newHasher();
+    try {
+      hasher.putString(JSON_FACTORY.toString(doc.getItem()), UTF_8);
+      AbstractInputStreamContent content = doc.getContent();
+      if (content != null) {
+        if (!content.retrySupported()) {
+          return null; // the content stream can only be read once
+        }
+        hasher.putString(String.valueOf(doc.getContentFormat()), UTF_8);
+        hasher.putString(String.valueOf(content.getType()), UTF_8);
+        try (InputStream in = content.getInputStream()) {
+          ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+        }
+      }
+    } catch (IOException e) {
+      logger.log(Level.FINE, "Error fingerprinting item " + doc.getItem().getName() + ": ", e);
+      return null;
+    }
+    return hasher.hash().asLong();
+  }
+
+  /** Skips the unchanged items, and records the items sent when the checkpoint is taken. */
+  private class FilteredIterable implements CheckpointCloseableIterable<ApiOperation> {
+    private final CheckpointCloseableIterable<ApiOperation> delegate;
+    private long[] pending = new long[16];
+    private int pendingCount = 0;
+    private int skipped = 0;
+
+    FilteredIterable(CheckpointCloseableIterable<ApiOperation> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public Iterator<ApiOperation> iterator() {
+      return Iterators.filter(delegate.iterator(), this::isChanged);
+    }
+
+    private boolean isChanged(ApiOperation operation) {
+      if (!(operation instanceof RepositoryDoc)) {
+        return true;
+      }
+      RepositoryDoc doc = (RepositoryDoc) operation;
+      Long fingerprint = fingerprint(doc);
+      if (fingerprint == null) {
+        return true;
+      }
+      long id = hashName(doc.getItem().getName());
+      if (contains(id, fingerprint)) {
+        skipped++;
+        return false;
+      }
+      if (pendingCount == pending.length) {
+        pending = Arrays.copyOf(pending, pending.length * 2);
+      }
+      pending[pendingCount++] = id;
+      pending[pendingCount++] = fingerprint;
+      return true;
+    }
+
+    @Override
+    public byte[] getCheckpoint() {
+      for (int i = 0; i < pendingCount; i += 2) {
+        put(pending[i], pending[i + 1]);
+      }
+      if (skipped > 0) {
+        logger.log(Level.FINE, "Skipped {0} unchanged items", skipped);
+      }
+      pendingCount = 0;
+      skipped = 0;
+      return delegate.getCheckpoint();
+    }
+
+    @Override
+    public boolean hasMore() {
+      return delegate.hasMore();
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import com.google.api.client.util.Key;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.enterprise.cloudsearch.sdk.RepositoryException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Storage for checkpoint (last sequence value) used by incremental updates that select a
+ * {@value ColumnManager#SEQUENCE_COLUMN}.
+ *
+ * <p>Sequence values are read as {@code long} values (see {@link DatabaseAccess}), so they are
+ * compared without any time zone conversion. If the query is ordered by sequence value, the
+ * checkpoint is resumable, in the same way as an ordered {@link IncrementalCheckpoint}. If a
+ * record is deferred, the last sequence value is kept before its value for the rest of the
+ * query.
+ */
+public class SequenceCheckpoint extends Checkpoint {
+  static SequenceCheckpoint parse(byte[] payload) throws RepositoryException {
+    return parse(payload, SequenceCheckpoint.class);
+  }
+
+  @Key
+  private long lastSequence;
+
+  private boolean ordered;
+
+  private long deferredSequence = Long.MAX_VALUE;
+
+  public SequenceCheckpoint() {
+  }
+
+  SequenceCheckpoint(long lastSequence) {
+    this.lastSequence = lastSequence;
+  }
+
+  @VisibleForTesting
+  long getLastSequence() {
+    return lastSequence;
+  }
+
+  /** Sets whether the records are ordered by sequence value, which makes this resumable. */
+  void setOrdered(boolean ordered) {
+    this.ordered = ordered;
+  }
+
+  @Override
+  public void setParameters(PreparedStatement stmt, TimeZone timeZone) throws SQLException {
+    stmt.setLong(1, lastSequence);
+  }
+
+  /**
+   * Update the checkpoint to the largest sequence value, if this column is present.
+   *
+   * @param allColumnValues the database record key/values from the result set
+   */
+  @Override
+  public void updateCheckpoint(Map<String, Object> allColumnValues) {
+    Object recordValue = allColumnValues.get(ColumnManager.SEQUENCE_COLUMN);
+    if (recordValue != null && (Long) recordValue > lastSequence) {
+      lastSequence = Math.min((Long) recordValue, deferredSequence - 1);
+    }
+  }
+
+  /** Keeps the last sequence value before the value of the given record. */
+  @Override
+  public boolean deferRecord(Map<String, Object> allColumnValues) {
+    Object recordValue = allColumnValues.get(ColumnManager.SEQUENCE_COLUMN);
+    if (recordValue == null) {
+      return false;
+    }
+    deferredSequence = Math.min(deferredSequence, (Long) recordValue);
+    lastSequence = Math.min(lastSequence, deferredSequence - 1);
+    return true;
+  }
+
+  /** Incremental checkpoints are persistent across traversals. */
+  @Override
+  public void resetCheckpoint() {
+  }
+
+  @Override
+  public boolean isPageable() {
+    return false;
+  }
+
+  @Override
+  public boolean isResumable() {
+    return ordered;
+  }
+
+  /** A batch can end before a record with a larger sequence value than the last one returned. */
+  @Override
+  public boolean canResumeBefore(Map<String, Object> allColumnValues) {
+    Object recordValue = allColumnValues.get(ColumnManager.SEQUENCE_COLUMN);
+    return recordValue == null || (Long) recordValue > lastSequence;
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Splits the output of a template into static segments and per-column slots, so that the
+ * template can be compiled into a form that appends the segments and the column values directly.
+ *
+ * <p>The template is applied once to placeholder tokens, one per column, and its output is split
+ * at the tokens. The template may do things with real values that the split output does not
+ * show, so the compiled form must be checked against the template with sample values from
+ * {@link #probe}. The compiled forms ({@link ContentRenderer}, {@link ViewUrlTemplate}) are not
+ * used if the check fails, and callers fall back to the template.
+ */
+final class TemplateProbe {
+  private static final String TOKEN_PREFIX = "zqxslot";
+  private static final String TOKEN_SUFFIX = "xqz";
+  private static final Pattern TOKEN = Pattern.compile(TOKEN_PREFIX + "(\\d+)" + TOKEN_SUFFIX);
+
+  private final ImmutableList<String> segments;
+  private final ImmutableList<String> slotColumns;
+
+  private TemplateProbe(List<String> segments, List<String> slotColumns) {
+    this.segments = ImmutableList.copyOf(segments);
+    this.slotColumns = ImmutableList.copyOf(slotColumns);
+  }
+
+  /**
+   * Applies a template to placeholder tokens, and splits the output at the tokens.
+   *
+   * @param template applies the template to a map of column values
+   * @param columns the template columns
+   * @return the static segments and slot columns of the template output
+   */
+  static TemplateProbe split(Function<Map<String, Object>, String> template,
+      List<String> columns) {
+    String output = template.apply(probe(columns, i -> TOKEN_PREFIX + i + TOKEN_SUFFIX));
+    List<String> segments = new ArrayList<>();
+    List<String> slotColumns = new ArrayList<>();
+    Matcher matcher = TOKEN.matcher(output);
+    int start = 0;
+    while (matcher.find()) {
+      segments.add(output.substring(start, matcher.start()));
+      slotColumns.add(columns.get(Integer.parseInt(matcher.group(1))));
+      start = matcher.end();
+    }
+    segments.add(output.substring(start));
+    return new TemplateProbe(segments, slotColumns);
+  }
+
+  /**
+   * Builds sample column values for checking a compiled template.
+   *
+   * @param columns the template columns
+   * @param valueForColumn the value for the column at each index
+   * @return a map of column values
+   */
+  static Map<String, Object> probe(List<String> columns,
+      Function<Integer, Object> valueForColumn) {
+    Map<String, Object> values = new HashMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      values.put(columns.get(i), valueForColumn.apply(i));
+    }
+    return values;
+  }
+
+  /** Gets the static segments, which are one more than the slots. */
+  ImmutableList<String> getSegments() {
+    return segments;
+  }
+
+  /** Gets the column of each slot, in the order of the output. */
+  ImmutableList<String> getSlotColumns() {
+    return slotColumns;
+  }
+}
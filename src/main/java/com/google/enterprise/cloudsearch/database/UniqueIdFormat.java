@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static java.util.Locale.US;
+
+import java.util.Arrays;
+
+/** The format of the item names created from the unique key columns. */
+enum UniqueIdFormat {
+  INVALID,
+  /** The encoded unique key column values (see {@link UniqueKey#makeUniqueId}). */
+  KEY,
+  /** A fixed-length hash of the encoded unique key (see {@link UniqueKey#hashUniqueId}). */
+  HASH;
+
+  @Override
+  public String toString() {
+    return name().toLowerCase(US);
+  }
+
+  public static UniqueIdFormat fromString(String configValue) {
+    for (UniqueIdFormat value : UniqueIdFormat.values()) {
+      if (value.toString().equals(configValue)) {
+        return value;
+      }
+    }
+    return INVALID;
+  }
+
+  public static final String VALUES =
+      Arrays.toString(
+          Arrays.stream(UniqueIdFormat.values())
+          .filter(p -> !p.equals(INVALID))
+          .toArray());
+}
@@ -17,11 +17,14 @@ package com.google.enterprise.cloudsearch.database;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Strings;
-import java.util.Arrays;
-import java.util.LinkedHashSet;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -33,6 +36,7 @@ import java.util.logging.Logger;
 class UniqueKey {
 
   private static final String NULL_STRING = "" + null;
+  private static final int HASH_BYTES = 16;
   private static final Logger log = Logger.getLogger(UniqueKey.class.getName());
 
   /**
@@ -46,14 +50,15 @@ class UniqueKey {
    *
    * <p>The record's unique ID is created by concatenating each unique key column together with
    * a "/" separator between them. E.g. if the Unique Key columns are "name" and "id", then the
-   * unique ID will be "name/id". See {@link #encodeSlashInData(Object, String)} for special cases
-   * where column value contains '_' and/or '/' characters.</p>
+   * unique ID will be "name/id". See
+   * {@link #encodeSlashInData(StringBuilder, Object, String)} for special cases where column
+   * value contains '_' and/or '/' characters.</p>
    *
    * @param keyColumns unique key column definitions
    * @param keyColumnValues key/value pairs
    * @return the unique ID for this record or empty if errors
    */
-  static String makeUniqueId(LinkedHashSet<String> keyColumns,
+  static String makeUniqueId(Collection<String> keyColumns,
       Map<String, Object> keyColumnValues) {
     checkNotNull(keyColumns, "Error building Unique ID, unique key columns cannot be null.");
     checkArgument(keyColumns.size() > 0,
@@ -62,12 +67,31 @@ class UniqueKey {
         "Error building Unique ID, unique key column/values cannot be null.");
     checkArgument(keyColumnValues.size() > 0,
         "Error building Unique ID, unique key columns cannot be empty");
-    StringBuilder sb = new StringBuilder();
+    StringBuilder sb = new StringBuilder(keyColumns.size() * 16);
+    boolean first = true;
     for (String ukColumn : keyColumns) {
-      sb.append("/");
-      sb.append(encodeSlashInData(keyColumnValues.get(ukColumn), ukColumn));
+      if (!first) {
+        sb.append('/');
+      }
+      first = false;
+      encodeSlashInData(sb, keyColumnValues.get(ukColumn), ukColumn);
     }
-    return sb.toString().substring(1); // skip leading slash
+    return sb.toString();
+  }
+
+  /**
+   * Hash an encoded unique ID into a short, fixed-length ID.
+   *
+   * <p>The hash is the first 128 bits of the SHA-256 hash of the UTF-8 encoded unique ID, encoded
+   * as 22 characters of unpadded, URL-safe base64.
+   *
+   * @param uniqueId the unique ID from {@link #makeUniqueId}
+   * @return the hashed unique ID
+   */
+  static String hashUniqueId(String uniqueId) {
+    checkNotNull(uniqueId, "Unique ID cannot be null.");
+    byte[] hash = Hashing.sha256().hashString(uniqueId, UTF_8).asBytes();
+    return BaseEncoding.base64Url().omitPadding().encode(hash, 0, HASH_BYTES);
   }
 
   /**
@@ -79,15 +103,23 @@ class UniqueKey {
   @VisibleForTesting
   static List<String> decodeUniqueId(String key) {
     checkArgument(!Strings.isNullOrEmpty(key), "Unique ID key cannot be empty.");
-    List<String> columns = Arrays.asList(key.split("(?<!_)/", -1));
-    columns.replaceAll(UniqueKey::decodeSlashInData);
+    // split on each '/' that is not preceded by '_'
+    List<String> columns = new ArrayList<>();
+    int start = 0;
+    for (int i = 0; i < key.length(); i++) {
+      if (key.charAt(i) == '/' && (i == 0 || key.charAt(i - 1) != '_')) {
+        columns.add(decodeSlashInData(key, start, i));
+        start = i + 1;
+      }
+    }
+    columns.add(decodeSlashInData(key, start, key.length()));
     return columns;
   }
 
   /**
    * Encode away troublesome '_' and '/' characters in a unique ID string.
    *
-   * <p>Note: copied directly from the GSA database adaptor code.</p>
+   * <p>Note: the encoding is the same as in the GSA database adaptor code.</p>
    *
    * <p> Don't let data end with '_', because then a '_' would precede the separator '/'.
    * If column value ends with '_' then append a '/' and take it away when decoding.
@@ -102,48 +134,69 @@ class UniqueKey {
    * Suppose unique key values are "5/" and "6/". Without appending another '/', unique ID will be
    * "5_//6_/", which will be split and decoded as "5" and "6".</p>
    *
+   * @param sb the unique ID being built
    * @param data the unique key column value
    * @param colName the column name associated with the data (for logging only)
-   * @return an encoded string of the column value
    */
-  private static String encodeSlashInData(Object data, String colName) {
+  private static void encodeSlashInData(StringBuilder sb, Object data, String colName) {
+    if (data instanceof Long || data instanceof Integer || data instanceof Short
+        || data instanceof Byte) {
+      sb.append(((Number) data).longValue()); // never contains '_' or '/'
+      return;
+    }
     if ((data == null) || (data.equals(NULL_STRING))) {
       log.log(Level.WARNING, "Unique key column [{0}] returned a 'null' value from the database.",
           colName);
-      return NULL_STRING; // allows for self-healing if unexpected data encountered
+      sb.append(NULL_STRING); // allows for self-healing if unexpected data encountered
+      return;
     }
     String value = data.toString();
-    if (!value.contains("/") && !value.contains("_")) {
-      return value;
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      if (c == '_' || c == '/') {
+        sb.append('_');
+      }
+      sb.append(c);
     }
-    char lastChar = value.charAt(value.length() - 1);
-
-    if ('_' == lastChar || '/' == lastChar) {
-      value += '/';
+    if (length > 0 && (value.charAt(length - 1) == '_' || value.charAt(length - 1) == '/')) {
+      sb.append("_/");
     }
-    value = value.replace("_", "__");
-    value = value.replace("/", "_/");
-    return value;
   }
 
   /**
    * Decode a column value from the unique ID.
    *
-   * <p>Note: copied directly from the GSA database adaptor code.</p>
+   * <p>Note: the encoding is the same as in the GSA database adaptor code.</p>
    *
    * <p> If id value ends with '/' (encoded as "_/") we know that this last '/' was appended
    * because column value ended with either '_' or '/'. We take away this last added '/'
    * character.</p>
    *
-   * @param id the unique column value split from the unique ID
+   * @param key the unique ID
+   * @param start the start index of the column value in the unique ID
+   * @param end the end index of the column value in the unique ID
    * @return the decoded column value
    */
-  private static String decodeSlashInData(String id) {
-    if (id.endsWith("_/")) {
-      id = id.substring(0, id.length() - 2);
+  private static String decodeSlashInData(String key, int start, int end) {
+    if (end - start >= 2 && key.charAt(end - 2) == '_' && key.charAt(end - 1) == '/') {
+      end -= 2;
+    }
+    StringBuilder sb = null;
+    int copied = start;
+    for (int i = start; i < end - 1; i++) {
+      if (key.charAt(i) == '_' && (key.charAt(i + 1) == '/' || key.charAt(i + 1) == '_')) {
+        if (sb == null) {
+          sb = new StringBuilder(end - start);
+        }
+        sb.append(key, copied, i);
+        copied = i + 1;
+        i++; // keep the escaped character
+      }
+    }
+    if (sb == null) {
+      return key.substring(start, end);
     }
-    id = id.replace("_/", "/");
-    id = id.replace("__", "_");
-    return id;
+    return sb.append(key, copied, end).toString();
   }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Encodes a character stream (e.g. a CLOB) directly into UTF-8 bytes.
+ *
+ * <p>The characters are never collected into a {@code String}. They are read in small chunks and
+ * encoded into byte chunks, which are joined once at the end. When the caller supplies an exact
+ * length hint and the data is single-byte UTF-8 (the common case for ASCII text), the first
+ * chunk is returned as-is without a final copy.
+ *
+ * <p>Unmappable or malformed characters (e.g. unpaired surrogates) are replaced in the same way
+ * as {@link String#getBytes(java.nio.charset.Charset)}, so the output is byte-for-byte identical
+ * to {@code CharStreams.toString(reader).getBytes(UTF_8)}.
+ *
+ * <p>Note: instances reuse their internal buffers and are not thread safe.
+ */
+class Utf8StreamEncoder {
+
+  @VisibleForTesting
+  static final int CHUNK_SIZE = 64 * 1024;
+
+  /** Upper bound on the size of the first chunk that is preallocated from the length hint. */
+  private static final int MAX_INITIAL_SIZE = 64 * 1024 * 1024;
+
+  private final CharsetEncoder encoder =
+      UTF_8.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  private final CharBuffer charBuffer = CharBuffer.allocate(8192);
+
+  /**
+   * Reads the whole stream and returns its UTF-8 encoding.
+   *
+   * @param reader the character stream, which is not closed by this method
+   * @param lengthHint the expected number of characters, or a non-positive value if unknown
+   * @return the UTF-8 encoded bytes
+   * @throws IOException on read errors
+   */
+  byte[] encode(Reader reader, long lengthHint) throws IOException {
+    checkNotNull(reader, "Reader cannot be null.");
+    encoder.reset();
+    charBuffer.clear();
+
+    List<ByteBuffer> fullChunks = new ArrayList<>();
+    int firstSize = lengthHint > 0 ? (int) Math.min(lengthHint, MAX_INITIAL_SIZE) : CHUNK_SIZE;
+    ByteBuffer out = ByteBuffer.wrap(new byte[firstSize]);
+    long total = 0;
+
+    boolean endOfInput = false;
+    while (!endOfInput) {
+      int read = reader.read(charBuffer);
+      if (read < 0) {
+        endOfInput = true;
+      }
+      charBuffer.flip();
+      while (true) {
+        CoderResult result = encoder.encode(charBuffer, out, endOfInput);
+        if (result.isOverflow()) {
+          total += out.position();
+          fullChunks.add(out);
+          out = ByteBuffer.wrap(new byte[CHUNK_SIZE]);
+        } else {
+          throwIfError(result);
+          break;
+        }
+      }
+      charBuffer.compact();
+    }
+    while (true) {
+      CoderResult result = encoder.flush(out);
+      if (result.isOverflow()) {
+        total += out.position();
+        fullChunks.add(out);
+        out = ByteBuffer.wrap(new byte[CHUNK_SIZE]);
+      } else {
+        throwIfError(result);
+        break;
+      }
+    }
+
+    if (fullChunks.isEmpty() && out.position() == out.capacity()) {
+      return out.array();
+    }
+    total += out.position();
+    if (total > Integer.MAX_VALUE) {
+      throw new IOException("Character stream is too large to encode: " + total + " bytes");
+    }
+    byte[] bytes = new byte[(int) total];
+    int offset = 0;
+    for (ByteBuffer chunk : fullChunks) {
+      System.arraycopy(chunk.array(), 0, bytes, offset, chunk.position());
+      offset += chunk.position();
+    }
+    System.arraycopy(out.array(), 0, bytes, offset, out.position());
+    return bytes;
+  }
+
+  /** The encoder replaces bad input, so errors here are unexpected. */
+  private static void throwIfError(CoderResult result) throws CharacterCodingException {
+    if (result.isError()) {
+      result.throwException();
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.escape.Escaper;
+import com.google.common.escape.Escapers;
+import com.google.common.net.UrlEscapers;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Builds view URLs from a precompiled URL format.
+ *
+ * <p>The template is compiled once from the SDK's URL builder by splitting a URL built from
+ * placeholder values into static segments and per-column slots (see {@link TemplateProbe}). Each
+ * URL is then built by appending the segments and the column values to a reusable
+ * {@code StringBuilder}.
+ *
+ * <p>The escaping of each column is found when the template is compiled, by comparing the URL
+ * builder's output for a value with special characters against the common URL escapers. Values
+ * of columns with a known escaping are escaped as they are appended. Values of other columns are
+ * only supported if they need no escaping: letters, digits, {@code '-'}, {@code '.'} and
+ * {@code '_'}. Numbers are supported if the URL builder formats them like {@code toString()}.
+ * {@link #buildUrl} returns {@code null} for values that are not supported, and callers fall
+ * back to the URL builder for them.
+ */
+class ViewUrlTemplate {
+  private static final Logger log = Logger.getLogger(ViewUrlTemplate.class.getName());
+
+  /** A value that the common URL escapers each escape differently. */
+  private static final String SPECIAL_VALUE = "a b/c?d#e&f+g=h:i@j%k\u00e9\u20ac";
+
+  /** The escapers that are recognized, in the order they are tried. */
+  private static final Escaper[] ESCAPERS = {
+    Escapers.nullEscaper(),
+    UrlEscapers.urlPathSegmentEscaper(),
+    UrlEscapers.urlFragmentEscaper(),
+    UrlEscapers.urlFormParameterEscaper(),
+  };
+
+  private static final int MAX_RETAINED_SIZE = 8192;
+  private static final ThreadLocal<StringBuilder> BUFFERS =
+      ThreadLocal.withInitial(StringBuilder::new);
+
+  private final String[] segments;
+  private final String[] slotColumns;
+  // the escaper of each slot, or null if only values that need no escaping are supported
+  private final Escaper[] slotEscapers;
+  private final boolean numbersSupported;
+
+  private ViewUrlTemplate(String[] segments, String[] slotColumns, Escaper[] slotEscapers,
+      boolean numbersSupported) {
+    this.segments = segments;
+    this.slotColumns = slotColumns;
+    this.slotEscapers = slotEscapers;
+    this.numbersSupported = numbersSupported;
+  }
+
+  /**
+   * Compiles a template equivalent to the given URL builder.
+   *
+   * @param urlBuilder builds a URL from a map of column values
+   * @param columns the URL columns
+   * @return the template, or {@code null} if the URLs cannot be reproduced
+   */
+  static ViewUrlTemplate compile(Function<Map<String, Object>, String> urlBuilder,
+      List<String> columns) {
+    checkNotNull(urlBuilder, "URL builder cannot be null.");
+    checkNotNull(columns, "Columns cannot be null.");
+    ViewUrlTemplate template;
+    try {
+      TemplateProbe probe = TemplateProbe.split(urlBuilder, columns);
+      String[] slotColumns = probe.getSlotColumns().toArray(new String[0]);
+      template = new ViewUrlTemplate(probe.getSegments().toArray(new String[0]), slotColumns,
+          new Escaper[slotColumns.length], true);
+      Map<String, Object> strings = TemplateProbe.probe(columns, i -> "Az09-._" + i);
+      if (!urlBuilder.apply(strings).equals(template.buildUrl(strings))) {
+        log.log(Level.WARNING, "View URL format cannot be compiled, using it directly.");
+        return null;
+      }
+      for (int i = 0; i < columns.size(); i++) {
+        findEscaper(urlBuilder, columns, i, template);
+      }
+      Set<String> unescaped = new HashSet<>();
+      for (int slot = 0; slot < slotColumns.length; slot++) {
+        if (template.slotEscapers[slot] == null) {
+          unescaped.add(slotColumns[slot]);
+        }
+      }
+      Map<String, Object> special = TemplateProbe.probe(columns,
+          i -> unescaped.contains(columns.get(i)) ? "Az09-._" + i : SPECIAL_VALUE + i);
+      if (!urlBuilder.apply(special).equals(template.buildUrl(special))) {
+        log.log(Level.FINE, "View URL escaping is not recognized.");
+        template = new ViewUrlTemplate(template.segments, slotColumns,
+            new Escaper[slotColumns.length], true);
+      }
+      Map<String, Object> numbers = TemplateProbe.probe(columns, i -> Long.valueOf(-1234567 - i));
+      if (!urlBuilder.apply(numbers).equals(template.buildUrl(numbers))) {
+        template = new ViewUrlTemplate(template.segments, slotColumns, template.slotEscapers,
+            false);
+      }
+    } catch (RuntimeException e) {
+      log.log(Level.WARNING, "View URL format cannot be compiled, using it directly.", e);
+      return null;
+    }
+    int escaped = 0;
+    for (Escaper escaper : template.slotEscapers) {
+      if (escaper != null) {
+        escaped++;
+      }
+    }
+    log.log(Level.CONFIG, "Compiled view URL format: {0} segments, {1} of {2} slots with known"
+        + " escaping, numbers supported: {3}", new Object[] {template.segments.length, escaped,
+            template.slotColumns.length, template.numbersSupported});
+    return template;
+  }
+
+  /**
+   * Finds the escaper that the URL builder uses for a column, and sets it on the column's slots.
+   * The slots are left without an escaper if none of the known escapers matches.
+   */
+  private static void findEscaper(Function<Map<String, Object>, String> urlBuilder,
+      List<String> columns, int column, ViewUrlTemplate template) {
+    Map<String, Object> values = TemplateProbe.probe(columns,
+        i -> (i == column) ? SPECIAL_VALUE : "Az09-._" + i);
+    String expected = urlBuilder.apply(values);
+    for (Escaper escaper : ESCAPERS) {
+      for (int slot = 0; slot < template.slotColumns.length; slot++) {
+        if (template.slotColumns[slot].equals(columns.get(column))) {
+          template.slotEscapers[slot] = escaper;
+        }
+      }
+      if (expected.equals(template.buildUrl(values))) {
+        return;
+      }
+    }
+    for (int slot = 0; slot < template.slotColumns.length; slot++) {
+      if (template.slotColumns[slot].equals(columns.get(column))) {
+        template.slotEscapers[slot] = null;
+      }
+    }
+  }
+
+  /**
+   * Builds the view URL of a record.
+   *
+   * @param allColumnValues the database record key/values from the result set
+   * @return the URL, or {@code null} if the record must be handled by the URL builder
+   */
+  String buildUrl(Map<String, Object> allColumnValues) {
+    StringBuilder url = BUFFERS.get();
+    url.setLength(0);
+    url.append(segments[0]);
+    for (int i = 0; i < slotColumns.length; i++) {
+      Object value = allColumnValues.get(slotColumns[i]);
+      if (value instanceof CharSequence) {
+        CharSequence chars = (CharSequence) value;
+        if (chars.length() == 0) {
+          return null;
+        } else if (slotEscapers[i] != null) {
+          url.append(slotEscapers[i].escape(chars.toString()));
+        } else if (!appendUnreserved(url, chars)) {
+          return null;
+        }
+      } else if (numbersSupported && (value instanceof Long || value instanceof Integer
+          || value instanceof Short || value instanceof Byte)) {
+        url.append(((Number) value).longValue());
+      } else {
+        return null;
+      }
+      url.append(segments[i + 1]);
+    }
+    String result = url.toString();
+    if (url.capacity() > MAX_RETAINED_SIZE) {
+      BUFFERS.remove();
+    }
+    return result;
+  }
+
+  /** Appends a value that needs no escaping, or returns {@code false}. */
+  private static boolean appendUnreserved(StringBuilder url, CharSequence value) {
+    int length = value.length();
+    for (int i = 0; i < length; i++) {
+      char c = value.charAt(i);
+      boolean unreserved = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+          || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_';
+      if (!unreserved) {
+        return false;
+      }
+    }
+    url.append(value);
+    return true;
+  }
+}
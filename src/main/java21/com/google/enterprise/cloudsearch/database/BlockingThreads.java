@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the threads that make blocking database calls.
+ *
+ * <p>This is the Java 21 implementation from the multi-release jar, which uses virtual threads.
+ * See the Java 8 implementation for details.
+ */
+final class BlockingThreads {
+
+  private BlockingThreads() {
+  }
+
+  /**
+   * Creates an unstarted thread.
+   *
+   * @param name the thread name
+   * @param task the thread's task
+   * @return the new thread
+   */
+  static Thread newThread(String name, Runnable task) {
+    return Thread.ofVirtual().name(name).unstarted(task);
+  }
+
+  /**
+   * Creates an executor for blocking database calls.
+   *
+   * @param nameFormat the thread name format, with a {@code %d} for the thread number
+   * @param maxThreads the maximum number of tasks that run at the same time
+   * @return the new executor
+   */
+  static ExecutorService newExecutor(String nameFormat, int maxThreads) {
+    String prefix = nameFormat.replace("%d", "");
+    return Executors.newFixedThreadPool(maxThreads, Thread.ofVirtual().name(prefix, 0).factory());
+  }
+}
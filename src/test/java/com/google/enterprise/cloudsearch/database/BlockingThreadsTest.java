@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/** Tests for the BlockingThreads class. */
+public class BlockingThreadsTest {
+
+  @Test
+  public void testNewThread() throws Exception {
+    AtomicReference<String> name = new AtomicReference<>();
+    Thread thread = BlockingThreads.newThread("test-reader",
+        () -> name.set(Thread.currentThread().getName()));
+    assertTrue(thread.isDaemon());
+    assertFalse(thread.isAlive());
+    thread.start();
+    thread.join(TimeUnit.SECONDS.toMillis(10));
+    assertEquals("test-reader", name.get());
+  }
+
+  @Test
+  public void testNewExecutor_boundsConcurrentTasks() throws Exception {
+    int maxThreads = 2;
+    int tasks = 6;
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(maxThreads);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = BlockingThreads.newExecutor("test-worker-%d", maxThreads);
+    try {
+      List<Future<String>> results = new ArrayList<>();
+      for (int i = 0; i < tasks; i++) {
+        results.add(executor.submit(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          started.countDown();
+          release.await();
+          running.decrementAndGet();
+          return Thread.currentThread().getName();
+        }));
+      }
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      // Give any task over the limit the chance to start.
+      Thread.sleep(100);
+      assertEquals(maxThreads, running.get());
+      release.countDown();
+      for (Future<String> result : results) {
+        assertTrue(result.get(10, TimeUnit.SECONDS).startsWith("test-worker-"));
+      }
+      assertEquals(maxThreads, maxRunning.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/** Tests for the ChangeCoalescer class. */
+public class ChangeCoalescerTest {
+
+  private final AtomicLong now = new AtomicLong(100000);
+
+  @Test
+  public void testIsHot_withinWindow() {
+    ChangeCoalescer coalescer = new ChangeCoalescer(5000, 10, now::get);
+    assertFalse(coalescer.isHot("id1"));
+    now.addAndGet(4999);
+    assertTrue(coalescer.isHot("id1"));
+    assertFalse(coalescer.isHot("id2"));
+    now.addAndGet(1);
+    assertFalse(coalescer.isHot("id1"));
+    // The window starts again when the item is sent.
+    assertTrue(coalescer.isHot("id1"));
+  }
+
+  @Test
+  public void testIsHot_evicted() {
+    ChangeCoalescer coalescer = new ChangeCoalescer(5000, 1, now::get);
+    assertFalse(coalescer.isHot("id1"));
+    assertFalse(coalescer.isHot("id2"));
+    assertFalse(coalescer.isHot("id1"));
+  }
+}
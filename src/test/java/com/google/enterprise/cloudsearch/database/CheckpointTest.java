@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.enterprise.cloudsearch.sdk.RepositoryException;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Tests for the Checkpoint encoding. */
+public class CheckpointTest {
+
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testGet_compact() {
+    String payload = new String(
+        new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(42).get(), UTF_8);
+    assertFalse(payload, payload.matches("(?s).*\\s.*"));
+    assertThat(payload, containsString("\"v\":1"));
+    assertThat(payload, containsString("\"offset\":42"));
+  }
+
+  @Test
+  public void testParse_roundTrip() throws RepositoryException {
+    IncrementalCheckpoint checkpoint = new IncrementalCheckpoint(1484261951100L);
+    IncrementalCheckpoint parsed = IncrementalCheckpoint.parse(checkpoint.get());
+    assertEquals(checkpoint, parsed);
+    assertEquals(1484261951100L, parsed.getLastUpdateTime());
+  }
+
+  @Test
+  public void testParse_rangeChecksums() throws RepositoryException {
+    FullCheckpoint checkpoint = new FullCheckpoint()
+        .setRangeChecksums(ImmutableMap.of("0", 3L, "1", -1234567890123L));
+    FullCheckpoint parsed = FullCheckpoint.parse(checkpoint.get());
+    assertEquals(Pagination.NONE, parsed.getPagination());
+    assertEquals(ImmutableMap.of("0", 3L, "1", -1234567890123L), parsed.getRangeChecksums());
+  }
+
+  @Test
+  public void testGet_noPagination_isNull() {
+    assertNull(new FullCheckpoint().get());
+  }
+
+  @Test
+  public void testCompleteQuery_lastSliceKeepsLatestTimestamp() {
+    long start = Timestamp.valueOf("2017-01-13 00:00:00.0").getTime();
+    long clock = Timestamp.valueOf("2017-01-14 00:00:00.0").getTime();
+    long record = Timestamp.valueOf("2017-01-13 08:55:33.3").getTime();
+    IncrementalCheckpoint checkpoint = new IncrementalCheckpoint(start);
+    checkpoint.setTraversalStartTime(clock);
+    checkpoint.setSlices(TimeUnit.DAYS.toMillis(1), 100);
+    assertFalse(checkpoint.completeQuery());
+    assertEquals(start, checkpoint.getLastUpdateTime());
+
+    checkpoint.setSlices(TimeUnit.DAYS.toMillis(1), 100);
+    checkpoint.updateCheckpoint(
+        ImmutableMap.of(ColumnManager.TIMESTAMP_COLUMN, new Timestamp(record)));
+    assertFalse(checkpoint.completeQuery());
+    assertEquals(record, checkpoint.getLastUpdateTime());
+  }
+
+  @Test
+  public void testCompleteQuery_earlierSliceMovesToSliceEnd() {
+    long start = Timestamp.valueOf("2017-01-11 00:00:00.0").getTime();
+    long clock = Timestamp.valueOf("2017-01-14 00:00:00.0").getTime();
+    IncrementalCheckpoint checkpoint = new IncrementalCheckpoint(start);
+    checkpoint.setTraversalStartTime(clock);
+    checkpoint.setSlices(TimeUnit.DAYS.toMillis(1), 100);
+    assertTrue(checkpoint.completeQuery());
+    assertEquals(start + TimeUnit.DAYS.toMillis(1), checkpoint.getLastUpdateTime());
+  }
+
+  @Test
+  public void testParse_legacyFullCheckpoint() throws RepositoryException {
+    String legacy = "{\n  \"offset\" : 42,\n  \"pagination\" : \"offset\"\n}";
+    FullCheckpoint parsed = FullCheckpoint.parse(legacy.getBytes(UTF_8));
+    assertEquals(new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(42), parsed);
+    assertEquals(Checkpoint.FORMAT_VERSION, parsed.getFormatVersion());
+  }
+
+  @Test
+  public void testParse_legacyIncrementalCheckpoint() throws RepositoryException {
+    String legacy = "{\n  \"lastUpdateTime\" : 1484261951100\n}";
+    IncrementalCheckpoint parsed = IncrementalCheckpoint.parse(legacy.getBytes(UTF_8));
+    assertEquals(1484261951100L, parsed.getLastUpdateTime());
+  }
+
+  @Test
+  public void testParse_newerVersion_throwsException() throws RepositoryException {
+    String future = "{\"v\":99,\"lastUpdateTime\":1484261951100}";
+    thrown.expect(RepositoryException.class);
+    thrown.expectMessage("Unsupported checkpoint format version 99");
+    IncrementalCheckpoint.parse(future.getBytes(UTF_8));
+  }
+}
@@ -15,8 +15,13 @@
  */
 package com.google.enterprise.cloudsearch.database;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static junit.framework.TestCase.assertEquals;
 import static junit.framework.TestCase.assertFalse;
+import static junit.framework.TestCase.assertNotNull;
+import static junit.framework.TestCase.assertNotSame;
+import static junit.framework.TestCase.assertNull;
+import static junit.framework.TestCase.assertSame;
 import static junit.framework.TestCase.assertTrue;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.mockito.Mockito.when;
@@ -25,6 +30,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.enterprise.cloudsearch.sdk.InvalidConfigurationException;
 import com.google.enterprise.cloudsearch.sdk.config.Configuration.ResetConfigRule;
 import com.google.enterprise.cloudsearch.sdk.config.Configuration.SetupConfigRule;
+import com.google.enterprise.cloudsearch.sdk.indexing.Acl;
 import com.google.enterprise.cloudsearch.sdk.indexing.ContentTemplate;
 import com.google.enterprise.cloudsearch.sdk.indexing.DefaultAcl.DefaultAclMode;
 import com.google.enterprise.cloudsearch.sdk.indexing.UrlBuilder;
@@ -204,6 +210,91 @@ public class ColumnManagerTest {
     ColumnManager.fromConfiguration(repositoryContextMock);
   }
 
+  @Test
+  public void testAclCache() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, address, readers_users, denied_groups from customer");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name , address, readers_users, denied_groups");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, address");
+    config.put(ColumnManager.DB_ACL_CACHE_SIZE, "1000");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    Map<String, Object> row1 = new HashMap<>();
+    row1.put("id", "1");
+    row1.put(ColumnManager.ACL_READERS_USERS, "user1, user2");
+    row1.put(ColumnManager.ACL_DENIED_GROUPS, "group1");
+    Map<String, Object> row2 = new HashMap<>(row1);
+    row2.put("id", "2");
+    Map<String, Object> row3 = new HashMap<>(row1);
+    row3.put(ColumnManager.ACL_READERS_USERS, "user3");
+
+    Acl acl1 = colMgr.createAclIfEnabled(row1);
+    assertEquals(Acl.createAcl("user1, user2", "", "", "group1"), acl1);
+    assertSame(acl1, colMgr.createAclIfEnabled(row2));
+    assertEquals(Acl.createAcl("user3", "", "", "group1"), colMgr.createAclIfEnabled(row3));
+  }
+
+  @Test
+  public void testAclCache_disabled() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, address, readers_users from customer");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name , address, readers_users");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, address");
+    config.put(ColumnManager.DB_ACL_CACHE_SIZE, "0");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    Map<String, Object> row = new HashMap<>();
+    row.put("id", "1");
+    row.put(ColumnManager.ACL_READERS_USERS, "user1");
+
+    Acl acl = colMgr.createAclIfEnabled(row);
+    assertEquals(Acl.createAcl("user1", "", "", ""), acl);
+    assertNotSame(acl, colMgr.createAclIfEnabled(row));
+  }
+
+  @Test
+  public void testAclCache_disabledByDefault() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, address, readers_users from customer");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name , address, readers_users");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, address");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    Map<String, Object> row = new HashMap<>();
+    row.put("id", "1");
+    row.put(ColumnManager.ACL_READERS_USERS, "user1");
+
+    assertNotSame(colMgr.createAclIfEnabled(row), colMgr.createAclIfEnabled(row));
+  }
+
+  @Test
+  public void testAclCache_negativeSize() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_ACL_CACHE_SIZE, "-1");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("ACL cache size"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testColumnLists() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, address, readers_users from customer");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name , address, readers_users");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "*");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "name, id");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertEquals(ImmutableList.of("id", "name", "address"), colMgr.getContentColumns());
+    assertEquals(ImmutableList.of("name", "id"), colMgr.getUniqueKeyColumns());
+    assertSame(colMgr.getContentColumns(), colMgr.getContentColumns());
+  }
+
   @Test
   public void testNoAcls_DefaultAclModeNONE() {
     Properties config = buildDefaultConfig();
@@ -233,6 +324,90 @@ public class ColumnManagerTest {
     ColumnManager.fromConfiguration(repositoryContextMock);
   }
 
+  @Test
+  public void testLazyColumns() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_LAZY_COLUMNS, "address");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertEquals(new LinkedHashSet<>(Arrays.asList("address")), colMgr.getLazySqlCols());
+  }
+
+  @Test
+  public void testInternColumns() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_INTERN_COLUMNS, "address");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertEquals(new LinkedHashSet<>(Arrays.asList("address")), colMgr.getInternSqlCols());
+  }
+
+  @Test
+  public void testInternColumns_invalidColumn() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_INTERN_COLUMNS, "status");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage("status");
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testLazyColumns_default() {
+    Properties config = buildDefaultConfig();
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertTrue(colMgr.getLazySqlCols().isEmpty());
+  }
+
+  @Test
+  public void testLazyColumns_invalidColumn() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_LAZY_COLUMNS, "zipcode");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage("zipcode");
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testLazyColumns_uniqueKeyColumn() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_LAZY_COLUMNS, "id");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage("Unique key columns cannot be lazy");
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testLazyColumns_beforeOtherColumns() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_LAZY_COLUMNS, "name");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage("Lazy columns must be the last columns");
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testUniqueKeyFormat_default() {
+    Properties config = buildDefaultConfig();
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertEquals(UniqueIdFormat.KEY, colMgr.getUniqueIdFormat());
+  }
+
+  @Test
+  public void testUniqueKeyFormat_invalid() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_UNIQUE_KEY_FORMAT, "md5");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("Unique key format"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
   @Test // repeated unique key
   public void testRepeatedUKey() {
     Properties config = buildDefaultConfig();
@@ -495,6 +670,164 @@ public class ColumnManagerTest {
     ColumnManager.fromConfiguration(repositoryContextMock);
   }
 
+  @Test
+  public void testIncUpdateBatchSize() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_INC_UPDATE_SQL, "select id, name, address, modified as "
+        + ColumnManager.TIMESTAMP_COLUMN + " from customer where modified > ?"
+        + " ORDER BY modified");
+    config.put(ColumnManager.DB_INC_UPDATE_BATCH_SIZE, "1000");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertEquals(1000, colMgr.getIncUpdateBatchSize());
+  }
+
+  @Test
+  public void testIncUpdateBatchSize_notOrdered() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_BATCH_SIZE, "1000");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("require the query to be ordered"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testIncUpdateSlices_onePlaceHolder() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_SLICE_SECONDS, "3600");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("requires two place holders"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testIncUpdateSlices_sequenceColumn() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, address, version as " + ColumnManager.SEQUENCE_COLUMN
+            + " from customer where version > ? and version <= ?");
+    config.put(ColumnManager.DB_INC_UPDATE_SLICE_SECONDS, "3600");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("cannot be used with sequence_column"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testStartSequenceSql() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, address, version as " + ColumnManager.SEQUENCE_COLUMN
+            + " from customer where version > ?");
+    config.put(ColumnManager.DB_INC_UPDATE_START_SEQUENCE_SQL,
+        "select max(version) as " + ColumnManager.SEQUENCE_COLUMN + " from customer");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertTrue(colMgr.isUsingSequenceColumn());
+    assertEquals("select max(version) as " + ColumnManager.SEQUENCE_COLUMN + " from customer",
+        colMgr.getStartSequenceSql());
+  }
+
+  @Test
+  public void testStartSequenceSql_missing() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, address, version as " + ColumnManager.SEQUENCE_COLUMN
+            + " from customer where version > ?");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(ColumnManager.DB_INC_UPDATE_START_SEQUENCE_SQL));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testStartSequenceSql_noSequenceColumn() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, address, version as " + ColumnManager.SEQUENCE_COLUMN
+            + " from customer where version > ?");
+    config.put(ColumnManager.DB_INC_UPDATE_START_SEQUENCE_SQL,
+        "select max(version) from customer");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("must select a column named sequence_column"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testIncUpdateBatchSize_sequenceColumnNotOrdered() {
+    Properties config = buildDefaultConfig(WITH_TIMESTAMP);
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, address, version as " + ColumnManager.SEQUENCE_COLUMN
+            + " from customer where version > ?");
+    config.put(ColumnManager.DB_INC_UPDATE_START_SEQUENCE_SQL,
+        "select max(version) as " + ColumnManager.SEQUENCE_COLUMN + " from customer");
+    config.put(ColumnManager.DB_INC_UPDATE_BATCH_SIZE, "100");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("ordered by sequence_column"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testChecksumSql() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_CHECKSUM_SQL,
+        "select id, name, hash as " + ColumnManager.CHECKSUM_COLUMN + " from customer");
+    config.put(ColumnManager.DB_SINGLE_RECORD_SQL,
+        "select id, name, address from customer where name = ? and id = ?");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertTrue(colMgr.isUsingChecksums());
+  }
+
+  @Test
+  public void testChecksumSql_placeHolders() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_CHECKSUM_SQL,
+        "select id, name, hash as " + ColumnManager.CHECKSUM_COLUMN + " from customer");
+    config.put(ColumnManager.DB_SINGLE_RECORD_SQL,
+        "select id, name, address from customer where id = ?");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString("a place holder ('?') for each unique key column"));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
+  @Test
+  public void testRangeChecksumSql() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_RANGE_CHECKSUM_SQL,
+        "select id / 1000 as " + ColumnManager.RANGE_COLUMN + ", sum(hash) as "
+        + ColumnManager.CHECKSUM_COLUMN + " from customer group by id / 1000");
+    config.put(ColumnManager.DB_RANGE_RECORDS_SQL,
+        "select id, name, address from customer where id / 1000 = ?");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertTrue(colMgr.isUsingRangeChecksums());
+    assertFalse(colMgr.isUsingChecksums());
+  }
+
+  @Test
+  public void testRangeChecksumSql_withChecksumSql() {
+    Properties config = buildDefaultConfig();
+    config.put(ColumnManager.DB_CHECKSUM_SQL,
+        "select id, name, hash as " + ColumnManager.CHECKSUM_COLUMN + " from customer");
+    config.put(ColumnManager.DB_SINGLE_RECORD_SQL,
+        "select id, name, address from customer where name = ? and id = ?");
+    config.put(ColumnManager.DB_RANGE_CHECKSUM_SQL,
+        "select id / 1000 as " + ColumnManager.RANGE_COLUMN + ", sum(hash) as "
+        + ColumnManager.CHECKSUM_COLUMN + " from customer group by id / 1000");
+    config.put(ColumnManager.DB_RANGE_RECORDS_SQL,
+        "select id, name, address from customer where id / 1000 = ?");
+    setupConfig.initConfig(config);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(ColumnManager.DB_CHECKSUM_SQL));
+    ColumnManager.fromConfiguration(repositoryContextMock);
+  }
+
   @Test
   public void testTimezoneValidationGmt() {
     Properties config = buildDefaultConfig(WITH_TIMESTAMP);
@@ -669,6 +1002,57 @@ public class ColumnManagerTest {
     assertEquals(target, template.apply(data));
   }
 
+  @Test
+  public void testCompiledContentTemplate() {
+    Properties config = new Properties();
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name, address, phone from table");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, address, phone");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "*");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_COMPILED_CONTENT_TEMPLATE, "true");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(UrlBuilder.CONFIG_FORMAT, "{0}");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(CONFIG_HIGH_DB_FORMAT, "id");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    ContentRenderer renderer = colMgr.getContentRenderer();
+    assertNotNull(renderer);
+    Map<String, Object> data = new HashMap<>();
+    data.put("id", 1234L);
+    data.put("name", "<John & \"Jane\" O'Doe>");
+    data.put("address", "123 Ma\u00efn St \u20ac");
+    data.put("phone", "555-123-4567");
+    assertEquals(colMgr.getContentTemplate().apply(data),
+        new String(renderer.render(data), UTF_8));
+  }
+
+  @Test
+  public void testCompiledContentTemplate_missingValue() {
+    Properties config = new Properties();
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name from table");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "id, name");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_COMPILED_CONTENT_TEMPLATE, "true");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(UrlBuilder.CONFIG_FORMAT, "{0}");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    Map<String, Object> data = new HashMap<>();
+    data.put("id", "1234");
+    assertNull(colMgr.getContentRenderer().render(data));
+  }
+
+  @Test
+  public void testCompiledContentTemplate_default() {
+    Properties config = buildDefaultConfig();
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    assertNull(colMgr.getContentRenderer());
+  }
+
   @Test
   public void testViewUrl() {
     Properties config = new Properties();
@@ -689,6 +1073,30 @@ public class ColumnManagerTest {
     assertEquals(golden, colMgr.getViewUrl(allColumnValues));
   }
 
+  @Test
+  public void testViewUrl_unreservedValues() {
+    Properties config = new Properties();
+    String viewUrl = "http://anysite/{0}/category/{1}?id={0}";
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name, address, phone from table");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, address, phone");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "*");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id, name");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id, name");
+    config.put(UrlBuilder.CONFIG_COLUMNS_TO_ESCAPE, "name");
+    config.put(UrlBuilder.CONFIG_FORMAT, viewUrl);
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    setupConfig.initConfig(config);
+    ColumnManager colMgr = ColumnManager.fromConfiguration(repositoryContextMock);
+    Map<String, Object> allColumnValues = new HashMap<String, Object>();
+    allColumnValues.put("id", "A-123");
+    allColumnValues.put("name", "product_1.v2");
+    assertEquals("http://anysite/A-123/category/product_1.v2?id=A-123",
+        colMgr.getViewUrl(allColumnValues));
+    allColumnValues.put("name", "product 1");
+    assertEquals("http://anysite/A-123/category/product%201?id=A-123",
+        colMgr.getViewUrl(allColumnValues));
+  }
+
   @Test
   public void testEscapeViewUrl() {
     Properties config = new Properties();
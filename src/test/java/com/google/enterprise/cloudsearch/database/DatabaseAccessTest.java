@@ -19,8 +19,10 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.BaseEncoding;
@@ -35,6 +37,7 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Random;
@@ -168,6 +171,36 @@ public class DatabaseAccessTest {
     }
   }
 
+  @Test
+  public void testRequery() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(2048) unique not null, name varchar(2048))",
+        "insert into testtable (id, name) values ('id1', 'Joe Smith')",
+        "insert into testtable (id, name) values ('id2', 'Mary Jones')");
+    List<String> keyColumns = ImmutableList.of("id");
+
+    try (DatabaseAccess databaseAccess = new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select * from testtable where id = ?")
+        .setCheckpoint(new DocCheckpoint(keyColumns, ImmutableMap.of("id", "id1")))
+        .build()) {
+      assertTrue(databaseAccess.next());
+      assertEquals(
+          ImmutableMap.of("id", "id1", "name", "Joe Smith"),
+          databaseAccess.getAllColumnValues());
+
+      databaseAccess.requery(new DocCheckpoint(keyColumns, ImmutableMap.of("id", "id2")));
+      assertTrue(databaseAccess.next());
+      assertEquals(
+          ImmutableMap.of("id", "id2", "name", "Mary Jones"),
+          databaseAccess.getAllColumnValues());
+      assertFalse(databaseAccess.next());
+
+      databaseAccess.requery(new DocCheckpoint(keyColumns, ImmutableMap.of("id", "id3")));
+      assertFalse(databaseAccess.next());
+    }
+  }
+
   @Test
   public void testChanges_typeTimestamp() throws Exception {
     executeUpdate(conn,
@@ -448,6 +481,134 @@ public class DatabaseAccessTest {
     }
   }
 
+  @Test
+  public void testInternedColumns() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(32) unique not null, status varchar(32))",
+        "insert into testtable (id, status) values ('id1', 'active')",
+        "insert into testtable (id, status) values ('id2', 'active')");
+
+    try (DatabaseAccess databaseAccess = new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select id, status from testtable order by id")
+        .setCheckpoint(new FullCheckpoint())
+        .setInternedColumns(ImmutableSet.of("status"))
+        .build()) {
+      assertTrue(databaseAccess.next());
+      Object first = databaseAccess.getAllColumnValues().get("status");
+      assertTrue(databaseAccess.next());
+      Object second = databaseAccess.getAllColumnValues().get("status");
+      assertEquals("active", first);
+      assertSame(first, second);
+      assertFalse(databaseAccess.next());
+    }
+  }
+
+  @Test
+  public void testLazyColumns() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(32) unique not null, name varchar(128), notes clob)",
+        "insert into testtable (id, name, notes) values ('id1', 'Joe Smith', 'some notes')");
+
+    try (DatabaseAccess databaseAccess = new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select id, name, notes from testtable")
+        .setCheckpoint(new FullCheckpoint())
+        .setLazyColumns(ImmutableSet.of("notes"))
+        .build()) {
+      assertTrue(databaseAccess.next());
+      Map<String, Object> values = databaseAccess.getAllColumnValues();
+      assertEquals(ImmutableMap.of("id", "id1", "name", "Joe Smith"),
+          DatabaseAccess.getEagerColumnValues(values));
+      assertTrue(values.containsKey("notes"));
+      assertEquals("some notes", new String((byte[]) values.get("notes"), UTF_8));
+      assertFalse(databaseAccess.next());
+    }
+  }
+
+  @Test
+  public void testLazyColumns_mapView() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(32) unique not null, name varchar(128), notes clob)",
+        "insert into testtable (id, name, notes) values ('id1', 'Joe Smith', 'some notes')",
+        "insert into testtable (id, name, notes) values ('id2', 'Mary Jones', null)");
+
+    try (DatabaseAccess databaseAccess = new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select id, name, notes from testtable order by id")
+        .setCheckpoint(new FullCheckpoint())
+        .setLazyColumns(ImmutableSet.of("notes"))
+        .build()) {
+      assertTrue(databaseAccess.next());
+      Map<String, Object> values = databaseAccess.getAllColumnValues();
+      assertEquals(ImmutableSet.of("id", "name", "notes"), values.keySet());
+      assertEquals(3, values.size());
+      assertEquals("some notes", new String((byte[]) values.get("notes"), UTF_8));
+
+      assertTrue(databaseAccess.next());
+      values = databaseAccess.getAllColumnValues();
+      assertEquals(ImmutableMap.of("id", "id2", "name", "Mary Jones"), values);
+      assertFalse(values.containsKey("notes"));
+      assertFalse(databaseAccess.next());
+    }
+  }
+
+  @Test
+  public void testLazyColumns_readInOrder() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(32) unique not null, notes clob, summary clob)",
+        "insert into testtable (id, notes, summary) values ('id1', 'some notes', 'a summary')");
+
+    try (DatabaseAccess databaseAccess = new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select id, notes, summary from testtable")
+        .setCheckpoint(new FullCheckpoint())
+        .setLazyColumns(ImmutableSet.of("notes", "summary"))
+        .build()) {
+      assertTrue(databaseAccess.next());
+      Map<String, Object> values = databaseAccess.getAllColumnValues();
+      // Reading the second lazy column reads the first one before it.
+      assertEquals("a summary", new String((byte[]) values.get("summary"), UTF_8));
+      assertEquals("some notes", new String((byte[]) values.get("notes"), UTF_8));
+    }
+  }
+
+  @Test
+  public void testLazyColumns_selectedBeforeOtherColumns_throwsException() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(32) unique not null, name varchar(128), notes clob)");
+
+    thrown.expect(SQLException.class);
+    thrown.expectMessage("must be selected after all of the other columns");
+    new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select id, notes, name from testtable")
+        .setCheckpoint(new FullCheckpoint())
+        .setLazyColumns(ImmutableSet.of("notes"))
+        .build();
+  }
+
+  @Test
+  public void testLazyColumns_fetchedAfterNext_throwsException() throws Exception {
+    executeUpdate(conn,
+        "create table testtable (id varchar(32) unique not null, notes varchar(128))",
+        "insert into testtable (id, notes) values ('id1', 'first')",
+        "insert into testtable (id, notes) values ('id2', 'second')");
+
+    try (DatabaseAccess databaseAccess = new DatabaseAccess.Builder()
+        .setConnectionFactory(factory)
+        .setSql("select id, notes from testtable order by id")
+        .setCheckpoint(new FullCheckpoint())
+        .setLazyColumns(ImmutableSet.of("notes"))
+        .build()) {
+      assertTrue(databaseAccess.next());
+      Map<String, Object> values = databaseAccess.getAllColumnValues();
+      assertTrue(databaseAccess.next());
+      thrown.expect(IllegalStateException.class);
+      values.get("notes");
+    }
+  }
+
   private void executeUpdate(Connection conn, String... sqls) throws SQLException {
     try (Statement stmt = conn.createStatement()) {
       for (String sql : sqls) {
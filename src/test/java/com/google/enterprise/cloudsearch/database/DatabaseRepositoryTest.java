@@ -39,6 +39,8 @@ import com.google.api.services.cloudsearch.v1.model.ObjectDefinition;
 import com.google.api.services.cloudsearch.v1.model.Schema;
 import com.google.api.services.cloudsearch.v1.model.StructuredDataObject;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.io.CharStreams;
 import com.google.enterprise.cloudsearch.sdk.CheckpointCloseableIterable;
@@ -82,7 +84,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import junitparams.JUnitParamsRunner;
 import junitparams.Parameters;
@@ -1559,13 +1563,11 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetAllDocs_paginationOffset_checkpointInvalid() throws Exception {
+  public void testGetAllDocs_hashedUniqueIds() throws Exception {
     Properties config = new Properties();
     setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
-        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 4 offset ?");
-    config.put(ColumnManager.DB_PAGINATION, "offset");
+    config.put(ColumnManager.DB_UNIQUE_KEY_FORMAT, "hash");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
@@ -1578,22 +1580,11 @@ public class DatabaseRepositoryTest {
         buildTable(stmt);
       }
 
-      List<String> expectedIds = ImmutableList.of(
-          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green");
-
-      byte[] checkpoint = new FullCheckpoint().setPagination(Pagination.NONE)
-          .toString()
-          .replace("none", "foo")
-          .getBytes(UTF_8);
-
       try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
-        assertEquals(expectedIds,
-            ImmutableList.copyOf(
-                Iterables.transform(allDocs, v -> ((RepositoryDoc) v).getItem().getName())));
-        assertCheckpointEquals(
-            new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(4),
-            allDocs.getCheckpoint());
-        assertTrue(allDocs.hasMore());
+        Item item = ((RepositoryDoc) allDocs.iterator().next()).getItem();
+        assertEquals(UniqueKey.hashUniqueId("id1/Joe Smith"), item.getName());
+        assertEquals(22, item.getName().length());
+        assertEquals("id1/Joe Smith", new String(item.decodePayload(), UTF_8));
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1603,11 +1594,15 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetAllDocs_paginationNone_checkpointOffset() throws Exception {
+  public void testGetAllDocs_prefetch() throws Exception {
     Properties config = new Properties();
     setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_PAGINATION, "none");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 4 offset ?");
+    config.put(ColumnManager.DB_PAGINATION, "offset");
+    config.put(DatabaseRepository.DB_PREFETCH_THREADS, "3");
+    config.put(DatabaseRepository.DB_PREFETCH_QUEUE_SIZE, "2");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
@@ -1621,18 +1616,16 @@ public class DatabaseRepositoryTest {
       }
 
       List<String> expectedIds = ImmutableList.of(
-          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green", "id5/Betty Black");
-
-      byte[] checkpoint = new FullCheckpoint().setPagination(Pagination.OFFSET)
-          .toString()
-          .getBytes(UTF_8);
+          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green");
 
       try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
         assertEquals(expectedIds,
             ImmutableList.copyOf(
                 Iterables.transform(allDocs, v -> ((RepositoryDoc) v).getItem().getName())));
-        assertNull(allDocs.getCheckpoint());
-        assertFalse(allDocs.hasMore());
+        assertCheckpointEquals(
+            new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(4),
+            allDocs.getCheckpoint());
+        assertTrue(allDocs.hasMore());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1642,13 +1635,15 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetAllDocs_paginationOffset_checkpointOffset() throws Exception {
+  public void testGetAllDocs_prefetchUnordered() throws Exception {
     Properties config = new Properties();
     setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_ALL_RECORDS_SQL,
         config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 4 offset ?");
     config.put(ColumnManager.DB_PAGINATION, "offset");
+    config.put(DatabaseRepository.DB_PREFETCH_THREADS, "3");
+    config.put(DatabaseRepository.DB_PREFETCH_ORDERED, "false");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
@@ -1661,14 +1656,17 @@ public class DatabaseRepositoryTest {
         buildTable(stmt);
       }
 
-      byte[] checkpoint = new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(9)
-          .toString()
-          .getBytes(UTF_8);
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(checkpoint)) {
-        assertEquals(ImmutableList.of(), ImmutableList.copyOf(allDocs));
-        assertNull(allDocs.getCheckpoint());
-        assertFalse(allDocs.hasMore());
+      Set<String> expectedIds = ImmutableSet.of(
+          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green");
+
+      try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
+        assertEquals(expectedIds,
+            ImmutableSet.copyOf(
+                Iterables.transform(allDocs, v -> ((RepositoryDoc) v).getItem().getName())));
+        assertCheckpointEquals(
+            new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(4),
+            allDocs.getCheckpoint());
+        assertTrue(allDocs.hasMore());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1678,13 +1676,41 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetAllDocs_paginationOffset_fullTraversals() throws Exception {
+  public void testInit_invalidPrefetchThreads() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(DatabaseRepository.DB_PREFETCH_THREADS, "-1");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(DatabaseRepository.DB_PREFETCH_THREADS));
+    dbRepository.init(repositoryContextMock);
+  }
+
+  @Test
+  public void testInit_checkpointRowsWithoutPagination() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(DatabaseRepository.DB_CHECKPOINT_ROWS, "2");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(ColumnManager.DB_PAGINATION));
+    dbRepository.init(repositoryContextMock);
+  }
+
+  @Test
+  public void testGetAllDocs_checkpointRows_paginationOffset() throws Exception {
     Properties config = new Properties();
     setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_ALL_RECORDS_SQL,
-        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 1 offset ?");
+        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 4 offset ?");
     config.put(ColumnManager.DB_PAGINATION, "offset");
+    config.put(DatabaseRepository.DB_CHECKPOINT_ROWS, "3");
+    config.put(DatabaseRepository.DB_PREFETCH_THREADS, "2");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
@@ -1697,35 +1723,14 @@ public class DatabaseRepositoryTest {
         buildTable(stmt);
       }
 
-      List<String> expectedIds = ImmutableList.of(
-          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green", "id5/Betty Black");
-
-      // Run two full traversals, to verify that the checkpoint is reset to null each time.
-      byte[] checkpoint = null;
-      for (int i = 0; i < 2; i++) {
-        List<String> actualIds = new ArrayList<>();
-        boolean hasMore = false;
-        do {
-          try (CheckpointCloseableIterable<ApiOperation> allDocs =
-              dbRepository.getAllDocs(checkpoint)) {
-            Iterator<ApiOperation> it = allDocs.iterator();
-            if (actualIds.size() < expectedIds.size()) {
-              assertTrue("Only found " + actualIds.toString(), it.hasNext());
-              actualIds.add(((RepositoryDoc) it.next()).getItem().getName());
-              assertFalse(it.hasNext());
-              hasMore = allDocs.hasMore();
-              assertTrue(hasMore);
-            } else {
-              assertFalse(it.hasNext());
-              hasMore = allDocs.hasMore();
-              assertFalse(hasMore);
-            }
-            checkpoint = allDocs.getCheckpoint();
-          }
-        } while (hasMore);
-
-        assertEquals(expectedIds, actualIds);
-        assertNull(checkpoint);
+      try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
+        assertEquals(ImmutableList.of("id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown"),
+            ImmutableList.copyOf(
+                Iterables.transform(allDocs, v -> ((RepositoryDoc) v).getItem().getName())));
+        assertCheckpointEquals(
+            new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(3),
+            allDocs.getCheckpoint());
+        assertTrue(allDocs.hasMore());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1735,36 +1740,73 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_spaceInTableName_succeeds() throws Exception {
+  public void testInit_invalidCheckpointRows() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(DatabaseRepository.DB_CHECKPOINT_ROWS, "-1");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(DatabaseRepository.DB_CHECKPOINT_ROWS));
+    dbRepository.init(repositoryContextMock);
+  }
+
+  @Test
+  public void testGetAllDocs_checksums() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id from \"test table\"");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name, phone from cktable");
+    config.put(ColumnManager.DB_CHECKSUM_SQL,
+        "select id, ver as " + ColumnManager.CHECKSUM_COLUMN + " from cktable order by id");
+    config.put(ColumnManager.DB_SINGLE_RECORD_SQL,
+        "select id, name, phone from cktable where id = ?");
+    config.put(DatabaseRepository.TRAVERSE_USE_QUEUES, "false");
     config.put(UrlBuilder.CONFIG_COLUMNS, "id");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(UrlBuilder.CONFIG_FORMAT, "{0}");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table \"test table\" (id varchar(32) unique not null)");
-        stmt.execute("insert into \"test table\" (id) values ('id1')");
+        stmt.execute("create table cktable (id varchar(32) unique not null, name varchar(128),"
+            + " phone varchar(16), ver int)");
+        stmt.execute("insert into cktable (id, name, phone, ver) values "
+            + "('id1', 'Joe Smith', '1234', 1), "
+            + "('id2', 'Mary Jones', '2134', 1), "
+            + "('id3', 'Mike Brown', '3124', 1)");
       }
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
+
+      // Only the records whose checksum changed are fetched after the first traversal.
+      List<String> updates = Arrays.asList(
+          null,
+          null,
+          "update cktable set name = 'Mary Green', ver = 2 where id = 'id2'");
+      List<List<String>> expectedTraversals = ImmutableList.of(
+          ImmutableList.of("id1", "id2", "id3"),
+          ImmutableList.of(),
+          ImmutableList.of("id2"));
+      for (int i = 0; i < updates.size(); i++) {
+        if (updates.get(i) != null) {
+          try (Statement stmt = conn.createStatement()) {
+            stmt.execute(updates.get(i));
+          }
+        }
+        try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
+          assertEquals(expectedTraversals.get(i),
+              ImmutableList.copyOf(Iterables.transform(allDocs,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertFalse(allDocs.hasMore());
+          allDocs.getCheckpoint();
         }
       }
     } finally {
@@ -1775,40 +1817,68 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_quotesInTableName_succeeds() throws Exception {
+  public void testGetAllDocs_checksums_connections() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id from \"test \"\"table\"\"\"");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name, phone from cktable");
+    config.put(ColumnManager.DB_CHECKSUM_SQL,
+        "select id, ver as " + ColumnManager.CHECKSUM_COLUMN + " from cktable order by id");
+    config.put(ColumnManager.DB_SINGLE_RECORD_SQL,
+        "select id, name, phone from cktable where id = ?");
+    config.put(DatabaseRepository.TRAVERSE_USE_QUEUES, "false");
     config.put(UrlBuilder.CONFIG_COLUMNS, "id");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(UrlBuilder.CONFIG_FORMAT, "{0}");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
-    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    AtomicInteger createdConnections = new AtomicInteger();
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory() {
+      @Override
+      public Connection createConnection() throws SQLException {
+        createdConnections.incrementAndGet();
+        return super.createConnection();
+      }
+    };
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        String createString =
-            "create table \"test \"\"table\"\"\" (id varchar(32) unique not null)";
-        String insertString = "insert into \"test \"\"table\"\"\" (id) values ('id1')";
-        stmt.execute(createString);
-        stmt.execute(insertString);
+        stmt.execute("create table cktable (id varchar(32) unique not null, name varchar(128),"
+            + " phone varchar(16), ver int)");
+        stmt.execute("insert into cktable (id, name, phone, ver) values "
+            + "('id1', 'Joe Smith', '1234', 1), "
+            + "('id2', 'Mary Jones', '2134', 1), "
+            + "('id3', 'Mike Brown', '3124', 1)");
       }
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
+
+      // The first traversal has no checksums, and reads all of the records in one query. The
+      // changed records are then fetched on a single connection.
+      List<String> updates = Arrays.asList(
+          null,
+          "update cktable set ver = 2 where id in ('id1', 'id3')");
+      List<List<String>> expectedTraversals = ImmutableList.of(
+          ImmutableList.of("id1", "id2", "id3"),
+          ImmutableList.of("id1", "id3"));
+      for (int i = 0; i < updates.size(); i++) {
+        if (updates.get(i) != null) {
+          try (Statement stmt = conn.createStatement()) {
+            stmt.execute(updates.get(i));
+          }
+        }
+        createdConnections.set(0);
+        try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
+          assertEquals(expectedTraversals.get(i),
+              ImmutableList.copyOf(Iterables.transform(allDocs,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          allDocs.getCheckpoint();
         }
+        assertEquals(2, createdConnections.get());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1818,40 +1888,85 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_euroInTableName_succeeds() throws Exception {
+  public void testGetAllDocs_rangeChecksums() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id from testtabl\u20ac");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name, phone from rangetable");
+    config.put(ColumnManager.DB_RANGE_CHECKSUM_SQL,
+        "select id / 10 as " + ColumnManager.RANGE_COLUMN + ", sum(ver) as "
+        + ColumnManager.CHECKSUM_COLUMN + " from rangetable group by id / 10 order by id / 10");
+    config.put(ColumnManager.DB_RANGE_RECORDS_SQL,
+        "select id, name, phone from rangetable where id / 10 = ? order by id");
+    config.put(DatabaseRepository.TRAVERSE_USE_QUEUES, "false");
     config.put(UrlBuilder.CONFIG_COLUMNS, "id");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(UrlBuilder.CONFIG_FORMAT, "{0}");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        String createString = "create table testtabl\u20ac (id varchar(32) unique not null)";
-        String insertString = "insert into testtabl\u20ac (id) values ('id1')";
-        stmt.execute(createString);
-        stmt.execute(insertString);
+        stmt.execute("create table rangetable (id int unique not null, name varchar(128),"
+            + " phone varchar(16), ver int)");
+        stmt.execute("insert into rangetable (id, name, phone, ver) values "
+            + "(1, 'Joe Smith', '1234', 1), "
+            + "(2, 'Mary Jones', '2134', 1), "
+            + "(11, 'Mike Brown', '3124', 1), "
+            + "(21, 'Sue Green', '4123', 1)");
       }
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
+
+      // Only the ranges whose checksum changed are read after the first traversal.
+      List<String> updates = Arrays.asList(
+          null,
+          null,
+          "update rangetable set name = 'Mary Green', ver = 2 where id = 2");
+      List<List<String>> expectedTraversals = ImmutableList.of(
+          ImmutableList.of("1", "2", "11", "21"),
+          ImmutableList.of(),
+          ImmutableList.of("1", "2"));
+      byte[] checkpoint = null;
+      for (int i = 0; i < updates.size(); i++) {
+        if (updates.get(i) != null) {
+          try (Statement stmt = conn.createStatement()) {
+            stmt.execute(updates.get(i));
+          }
         }
+        try (CheckpointCloseableIterable<ApiOperation> allDocs =
+            dbRepository.getAllDocs(checkpoint)) {
+          assertEquals(expectedTraversals.get(i),
+              ImmutableList.copyOf(Iterables.transform(allDocs,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertFalse(allDocs.hasMore());
+          checkpoint = allDocs.getCheckpoint();
+        }
+      }
+      assertEquals(ImmutableMap.of("0", 3L, "1", 1L, "2", 1L),
+          FullCheckpoint.parse(checkpoint).getRangeChecksums());
+
+      // The range checksums are kept in the checkpoint, so they are still used after a restart.
+      dbRepository.close();
+      dbRepository = new DatabaseRepository(helperMock);
+      dbRepository.init(repositoryContextMock);
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("update rangetable set ver = 2 where id = 21");
+      }
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(checkpoint)) {
+        assertEquals(ImmutableList.of("21"),
+            ImmutableList.copyOf(Iterables.transform(allDocs,
+                v -> ((RepositoryDoc) v).getItem().getName())));
+        checkpoint = allDocs.getCheckpoint();
       }
+      assertEquals(ImmutableMap.of("0", 3L, "1", 1L, "2", 2L),
+          FullCheckpoint.parse(checkpoint).getRangeChecksums());
     } finally {
       factory.releaseConnection(conn);
       dbRepository.close();
@@ -1859,64 +1974,57 @@ public class DatabaseRepositoryTest {
     }
   }
 
-  private String getContentString(RepositoryDoc doc) throws IOException {
-    return CharStreams.toString(
-        new InputStreamReader(doc.getContent().getInputStream(), Charsets.UTF_8));
-  }
-
-  private String getExpectedContentString(String columnName, String columnValue) {
-    String output =
-        "<!DOCTYPE html>\n"
-        + "<html lang='en'>\n"
-        + "<head>\n"
-        + "<meta http-equiv='Content-Type' content='text/html; charset=utf-8'/>\n"
-        + "<title>" + columnValue + "</title>\n"
-        + "</head>\n"
-        + "<body>\n"
-        + "<div id='" + columnName + "'>\n"
-        + "  <p>" + columnName + ":</p>\n"
-        + "  <h1>" + columnValue + "</h1>\n"
-        + "</div>\n"
-        + "</body>\n"
-        + "</html>\n";
-    return output;
-  }
-
   @Test
-  public void getAllDocs_spaceInColumnName_succeeds() throws Exception {
+  public void testGetAllDocs_rangeChecksums_maxItems() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id with space");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id with space");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select \"id with space\" from testtable");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "id with space");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id with space");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name, phone from rangetable");
+    config.put(ColumnManager.DB_RANGE_CHECKSUM_SQL,
+        "select id / 10 as " + ColumnManager.RANGE_COLUMN + ", sum(ver) as "
+        + ColumnManager.CHECKSUM_COLUMN + " from rangetable group by id / 10 order by id / 10");
+    config.put(ColumnManager.DB_RANGE_RECORDS_SQL,
+        "select id, name, phone from rangetable where id / 10 = ? order by id");
+    config.put(DatabaseRepository.TRAVERSE_USE_QUEUES, "false");
+    config.put(DatabaseRepository.DB_CHECKSUM_MAX_ITEMS, "2");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(UrlBuilder.CONFIG_FORMAT, "{0}");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable (\"id with space\" varchar(32) unique not null)");
-        stmt.execute("insert into testtable (\"id with space\") values ('id1')");
+        stmt.execute("create table rangetable (id int unique not null, name varchar(128),"
+            + " phone varchar(16), ver int)");
+        stmt.execute("insert into rangetable (id, name, phone, ver) values "
+            + "(1, 'Joe Smith', '1234', 1), "
+            + "(11, 'Mike Brown', '3124', 1), "
+            + "(21, 'Sue Green', '4123', 1)");
       }
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
-          // The column name is used as an id in the generated html, though id values
-          // aren't technically allowed to contain spaces.
-          assertEquals(getExpectedContentString("id with space", "id1"), getContentString(record));
+
+      // Only the first two range checksums are kept, so the last range is always read.
+      List<List<String>> expectedTraversals = ImmutableList.of(
+          ImmutableList.of("1", "11", "21"),
+          ImmutableList.of("21"));
+      byte[] checkpoint = null;
+      for (List<String> expected : expectedTraversals) {
+        try (CheckpointCloseableIterable<ApiOperation> allDocs =
+            dbRepository.getAllDocs(checkpoint)) {
+          assertEquals(expected,
+              ImmutableList.copyOf(Iterables.transform(allDocs,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          checkpoint = allDocs.getCheckpoint();
         }
+        assertEquals(ImmutableMap.of("0", 1L, "1", 1L),
+            FullCheckpoint.parse(checkpoint).getRangeChecksums());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1926,39 +2034,57 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_spaceInColumnNameWithAlias_succeeds() throws Exception {
+  public void testInit_checksumsWithQueues() throws Exception {
     Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_CHECKSUM_SQL,
+        "select id, name, ver as " + ColumnManager.CHECKSUM_COLUMN + " from testtable");
+    config.put(ColumnManager.DB_SINGLE_RECORD_SQL,
+        "select id, name, phone from testtable where id = ? and name = ?");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(DatabaseRepository.TRAVERSE_USE_QUEUES));
+    dbRepository.init(repositoryContextMock);
+  }
+
+  @Test
+  public void testGetAllDocs_paginationOffset_checkpointInvalid() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "idalias");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "idalias");
     config.put(ColumnManager.DB_ALL_RECORDS_SQL,
-        "select \"id with space\" as idalias from testtable");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "idalias");
-    config.put(CONFIG_TITLE_DB_FORMAT, "idalias");
-    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 4 offset ?");
+    config.put(ColumnManager.DB_PAGINATION, "offset");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable (\"id with space\" varchar(32) unique not null)");
-        stmt.execute("insert into testtable (\"id with space\") values ('id1')");
+        buildTable(stmt);
       }
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
-          assertEquals(getExpectedContentString("idalias", "id1"), getContentString(record));
-        }
+
+      List<String> expectedIds = ImmutableList.of(
+          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green");
+
+      byte[] checkpoint = new FullCheckpoint().setPagination(Pagination.NONE)
+          .toString()
+          .replace("none", "foo")
+          .getBytes(UTF_8);
+
+      try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
+        assertEquals(expectedIds,
+            ImmutableList.copyOf(
+                Iterables.transform(allDocs, v -> ((RepositoryDoc) v).getItem().getName())));
+        assertCheckpointEquals(
+            new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(4),
+            allDocs.getCheckpoint());
+        assertTrue(allDocs.hasMore());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -1968,39 +2094,72 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_spaceInAlias_succeeds() throws Exception {
+  public void testGetAllDocs_paginationNone_checkpointOffset() throws Exception {
     Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_PAGINATION, "none");
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      List<String> expectedIds = ImmutableList.of(
+          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green", "id5/Betty Black");
+
+      byte[] checkpoint = new FullCheckpoint().setPagination(Pagination.OFFSET)
+          .toString()
+          .getBytes(UTF_8);
+
+      try (CheckpointCloseableIterable<ApiOperation> allDocs = dbRepository.getAllDocs(null)) {
+        assertEquals(expectedIds,
+            ImmutableList.copyOf(
+                Iterables.transform(allDocs, v -> ((RepositoryDoc) v).getItem().getName())));
+        assertNull(allDocs.getCheckpoint());
+        assertFalse(allDocs.hasMore());
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetAllDocs_paginationOffset_checkpointOffset() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id alias");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id alias");
     config.put(ColumnManager.DB_ALL_RECORDS_SQL,
-        "select id  as \"id alias\" from testtable");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "id alias");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id alias");
-    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 4 offset ?");
+    config.put(ColumnManager.DB_PAGINATION, "offset");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable (id varchar(32) unique not null)");
-        stmt.execute("insert into testtable (id) values ('id1')");
+        buildTable(stmt);
       }
-      // query the db
+
+      byte[] checkpoint = new FullCheckpoint().setPagination(Pagination.OFFSET).setOffset(9)
+          .toString()
+          .getBytes(UTF_8);
       try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
-          assertEquals(getExpectedContentString("id alias", "id1"), getContentString(record));
-        }
+          dbRepository.getAllDocs(checkpoint)) {
+        assertEquals(ImmutableList.of(), ImmutableList.copyOf(allDocs));
+        assertNull(allDocs.getCheckpoint());
+        assertFalse(allDocs.hasMore());
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2010,46 +2169,54 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_quotesInColumnName_failsValidation() throws Exception {
+  public void testGetAllDocs_paginationOffset_fullTraversals() throws Exception {
     Properties config = new Properties();
+    setAllMandatory(config);
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id with \"quotes\"");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id with \"quotes\"");
     config.put(ColumnManager.DB_ALL_RECORDS_SQL,
-        "select \"id with \"\"quotes\"\"\" from testtable");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "id with \"quotes\"");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id with \"quotes\"");
-    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+        config.get(ColumnManager.DB_ALL_RECORDS_SQL) + " limit 1 offset ?");
+    config.put(ColumnManager.DB_PAGINATION, "offset");
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
-    // Fails because the validation checks for 'id with "quotes"' in the select statement
-    // but the statement contains 'id with ""quotes""'.
-    thrown.expect(InvalidConfigurationException.class);
-    thrown.expectMessage("Missing column names in main SQL query: [id with \"quotes\"]");
     dbRepository.init(repositoryContextMock);
 
-    // TODO(gemerson): Leaving this here for now in case we decide to change the validation
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute(
-            "create table testtable (\"id with \"\"quotes\"\"\" varchar(32) unique not null)");
-        stmt.execute("insert into testtable (\"id with \"\"quotes\"\"\") values ('id1')");
+        buildTable(stmt);
       }
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> allDocs =
-          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
-        for (ApiOperation op : allDocs) {
-          RepositoryDoc record = (RepositoryDoc) op;
-          Item item = record.getItem();
-          assertEquals("id1", item.getName());
-          assertEquals(getExpectedContentString("id with &quot;quotes&quot;", "id1"),
-              getContentString(record));
-        }
+
+      List<String> expectedIds = ImmutableList.of(
+          "id1/Joe Smith", "id2/Mary Jones", "id3/Mike Brown", "id4/Sue Green", "id5/Betty Black");
+
+      // Run two full traversals, to verify that the checkpoint is reset to null each time.
+      byte[] checkpoint = null;
+      for (int i = 0; i < 2; i++) {
+        List<String> actualIds = new ArrayList<>();
+        boolean hasMore = false;
+        do {
+          try (CheckpointCloseableIterable<ApiOperation> allDocs =
+              dbRepository.getAllDocs(checkpoint)) {
+            Iterator<ApiOperation> it = allDocs.iterator();
+            if (actualIds.size() < expectedIds.size()) {
+              assertTrue("Only found " + actualIds.toString(), it.hasNext());
+              actualIds.add(((RepositoryDoc) it.next()).getItem().getName());
+              assertFalse(it.hasNext());
+              hasMore = allDocs.hasMore();
+              assertTrue(hasMore);
+            } else {
+              assertFalse(it.hasNext());
+              hasMore = allDocs.hasMore();
+              assertFalse(hasMore);
+            }
+            checkpoint = allDocs.getCheckpoint();
+          }
+        } while (hasMore);
+
+        assertEquals(expectedIds, actualIds);
+        assertNull(checkpoint);
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2059,14 +2226,14 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_euroInColumnName_succeeds() throws Exception {
+  public void getAllDocs_spaceInTableName_succeeds() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "idWith\u20acuro");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "idWith\u20acuro");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select \"idWith\u20acuro\" from testtable");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "idWith\u20acuro");
-    config.put(CONFIG_TITLE_DB_FORMAT, "idWith\u20acuro");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id from \"test table\"");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
@@ -2079,8 +2246,8 @@ public class DatabaseRepositoryTest {
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable (\"idWith\u20acuro\" varchar(32) unique not null)");
-        stmt.execute("insert into testtable (\"idWith\u20acuro\") values ('id1')");
+        stmt.execute("create table \"test table\" (id varchar(32) unique not null)");
+        stmt.execute("insert into \"test table\" (id) values ('id1')");
       }
       // query the db
       try (CheckpointCloseableIterable<ApiOperation> allDocs =
@@ -2089,8 +2256,6 @@ public class DatabaseRepositoryTest {
           RepositoryDoc record = (RepositoryDoc) op;
           Item item = record.getItem();
           assertEquals("id1", item.getName());
-          assertEquals(getExpectedContentString("idWith\u20acuro", "id1"),
-              getContentString(record));
         }
       }
     } finally {
@@ -2101,19 +2266,12 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  @Parameters({
-    "data-with-dash",
-    "data with spaces",
-    "data with \u20acuro",
-    "data with MixedCaseChars"
-  })
-  public void getAllDocs_charsInMetadataTitle_succeeds(String dataForTitle) throws Exception {
+  public void getAllDocs_quotesInTableName_succeeds() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id, data");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, data from testtable");
-    config.put(IndexingItemBuilder.TITLE_FIELD, "data");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id from \"test \"\"table\"\"\"");
     config.put(UrlBuilder.CONFIG_COLUMNS, "id");
     config.put(CONFIG_TITLE_DB_FORMAT, "id");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
@@ -2128,8 +2286,11 @@ public class DatabaseRepositoryTest {
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable (id varchar(32) unique not null, data varchar(128))");
-        stmt.execute("insert into testtable (id, data) values ('id1', '" + dataForTitle + "')");
+        String createString =
+            "create table \"test \"\"table\"\"\" (id varchar(32) unique not null)";
+        String insertString = "insert into \"test \"\"table\"\"\" (id) values ('id1')";
+        stmt.execute(createString);
+        stmt.execute(insertString);
       }
       // query the db
       try (CheckpointCloseableIterable<ApiOperation> allDocs =
@@ -2137,7 +2298,7 @@ public class DatabaseRepositoryTest {
         for (ApiOperation op : allDocs) {
           RepositoryDoc record = (RepositoryDoc) op;
           Item item = record.getItem();
-          assertEquals(dataForTitle, item.getMetadata().getTitle());
+          assertEquals("id1", item.getName());
         }
       }
     } finally {
@@ -2147,25 +2308,13 @@ public class DatabaseRepositoryTest {
     }
   }
 
-  private Object uniqueKeyColumnParams() {
-    return new Object[]{
-      new Object[] { "id", "id1"},
-      new Object[] { "id,textdata", "id1/textcontent"},
-      new Object[] { "id,numericdata", "id1/11"},
-      new Object[] { "textdata,numericdata", "textcontent/11"},
-      new Object[] { "numericdata, id, textdata", "11/id1/textcontent"}
-    };
-  }
-
   @Test
-  @Parameters(method = "uniqueKeyColumnParams")
-  public void getAllDocs_uniqueKeyColumn_succeeds(String keyColumns, String key) throws Exception {
+  public void getAllDocs_euroInTableName_succeeds() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, keyColumns);
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id, textdata, numericdata");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, textdata, numericdata from testtable");
-    config.put(IndexingItemBuilder.TITLE_FIELD, "textdata");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id from testtabl\u20ac");
     config.put(UrlBuilder.CONFIG_COLUMNS, "id");
     config.put(CONFIG_TITLE_DB_FORMAT, "id");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
@@ -2180,12 +2329,10 @@ public class DatabaseRepositoryTest {
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable ("
-            + "id varchar(32) unique not null, "
-            + "textdata varchar(128), "
-            + "numericdata int)");
-        stmt.execute(
-            "insert into testtable (id, textdata, numericdata) values ('id1', 'textcontent', 11)");
+        String createString = "create table testtabl\u20ac (id varchar(32) unique not null)";
+        String insertString = "insert into testtabl\u20ac (id) values ('id1')";
+        stmt.execute(createString);
+        stmt.execute(insertString);
       }
       // query the db
       try (CheckpointCloseableIterable<ApiOperation> allDocs =
@@ -2193,7 +2340,7 @@ public class DatabaseRepositoryTest {
         for (ApiOperation op : allDocs) {
           RepositoryDoc record = (RepositoryDoc) op;
           Item item = record.getItem();
-          assertEquals(key, item.getName());
+          assertEquals("id1", item.getName());
         }
       }
     } finally {
@@ -2203,29 +2350,38 @@ public class DatabaseRepositoryTest {
     }
   }
 
+  private String getContentString(RepositoryDoc doc) throws IOException {
+    return CharStreams.toString(
+        new InputStreamReader(doc.getContent().getInputStream(), Charsets.UTF_8));
+  }
+
+  private String getExpectedContentString(String columnName, String columnValue) {
+    String output =
+        "<!DOCTYPE html>\n"
+        + "<html lang='en'>\n"
+        + "<head>\n"
+        + "<meta http-equiv='Content-Type' content='text/html; charset=utf-8'/>\n"
+        + "<title>" + columnValue + "</title>\n"
+        + "</head>\n"
+        + "<body>\n"
+        + "<div id='" + columnName + "'>\n"
+        + "  <p>" + columnName + ":</p>\n"
+        + "  <h1>" + columnValue + "</h1>\n"
+        + "</div>\n"
+        + "</body>\n"
+        + "</html>\n";
+    return output;
+  }
+
   @Test
-  @Parameters({
-    "int, 123",
-    "double, 12.3", // float, double data type
-    "bigint, 9223372036854775802", // long data type
-    "boolean, false",
-    "char(3), abc",
-    "varchar(16), stringid", // string data type
-    "date, 2015-12-15",
-    "time, 23:59:59",
-    "timestamp, 2015-12-15 23:15:15.0"
-  })
-  // http://www.h2database.com/html/datatypes.html
-  public void uniqueKeyColumn_DataTypes_succeed(String columnType, String value)
-      throws Exception {
+  public void getAllDocs_spaceInColumnName_succeeds() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id, data");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, data from testtable");
-    config.put(IndexingItemBuilder.TITLE_FIELD, "data");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id with space");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id with space");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select \"id with space\" from testtable");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id with space");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id with space");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
@@ -2236,21 +2392,21 @@ public class DatabaseRepositoryTest {
 
     Connection conn = factory.createConnection();
     try {
+      // build the db
       try (Statement stmt = conn.createStatement()) {
-        String createSQL = String.format("create table testtable (id %s unique not null, "
-            + "data varchar(128))", columnType);
-        String insertSQL = String.format("insert into testtable (id, data) "
-            + "values('%s', 'testdata')", value);
-        stmt.execute(createSQL);
-        stmt.execute(insertSQL);
+        stmt.execute("create table testtable (\"id with space\" varchar(32) unique not null)");
+        stmt.execute("insert into testtable (\"id with space\") values ('id1')");
       }
-
+      // query the db
       try (CheckpointCloseableIterable<ApiOperation> allDocs =
           dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
         for (ApiOperation op : allDocs) {
           RepositoryDoc record = (RepositoryDoc) op;
           Item item = record.getItem();
-          assertEquals(value, item.getName());
+          assertEquals("id1", item.getName());
+          // The column name is used as an id in the generated html, though id values
+          // aren't technically allowed to contain spaces.
+          assertEquals(getExpectedContentString("id with space", "id1"), getContentString(record));
         }
       }
     } finally {
@@ -2261,15 +2417,15 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void getAllDocs_nullValueInUrlColumn_noUrlSet() throws Exception {
+  public void getAllDocs_spaceInColumnNameWithAlias_succeeds() throws Exception {
     Properties config = new Properties();
     config.put(DatabaseConnectionFactory.DB_URL, getUrl());
-    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
-    config.put(ColumnManager.DB_ALL_COLUMNS, "id, data");
-    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, data from testtable");
-    config.put(IndexingItemBuilder.TITLE_FIELD, "data");
-    config.put(UrlBuilder.CONFIG_COLUMNS, "data");
-    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "idalias");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "idalias");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select \"id with space\" as idalias from testtable");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "idalias");
+    config.put(CONFIG_TITLE_DB_FORMAT, "idalias");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
     setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
@@ -2282,20 +2438,17 @@ public class DatabaseRepositoryTest {
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        stmt.execute("create table testtable (id varchar(32) unique not null, data varchar(128))");
-        stmt.execute("insert into testtable (id, data) values ('id1', 'text')");
-        stmt.execute("insert into testtable (id) values ('id2')");
-        stmt.execute("insert into testtable (id, data) values ('id3', 'text')");
+        stmt.execute("create table testtable (\"id with space\" varchar(32) unique not null)");
+        stmt.execute("insert into testtable (\"id with space\") values ('id1')");
       }
+      // query the db
       try (CheckpointCloseableIterable<ApiOperation> allDocs =
           dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
         for (ApiOperation op : allDocs) {
-          Item item = ((RepositoryDoc) op).getItem();
-          if (item.getName().equals("id2")) {
-            assertNull(item.getMetadata().getSourceRepositoryUrl());
-          } else {
-            assertEquals("text", item.getMetadata().getSourceRepositoryUrl());
-          }
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals("id1", item.getName());
+          assertEquals(getExpectedContentString("idalias", "id1"), getContentString(record));
         }
       }
     } finally {
@@ -2306,32 +2459,39 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetChangesNoInitialCheckpoint() throws Exception {
-    setupConfiguration(getUrl(), "");
+  public void getAllDocs_spaceInAlias_succeeds() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id alias");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id alias");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id  as \"id alias\" from testtable");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id alias");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id alias");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
-    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
-    // create target for verification
-    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
-        getTargetIncrementalChanges(LATEST_CHECKPOINT_TIMESTAMP);
     Connection conn = factory.createConnection();
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        buildTable(stmt);
+        stmt.execute("create table testtable (id varchar(32) unique not null)");
+        stmt.execute("insert into testtable (id) values ('id1')");
       }
-
       // query the db
-      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(null)) {
-        assertNotNull(incrementalChanges);
-
-        // verify items
-        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals("id1", item.getName());
+          assertEquals(getExpectedContentString("id alias", "id1"), getContentString(record));
+        }
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2341,33 +2501,46 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetChanges() throws Exception {
-    setupConfiguration(getUrl(), "");
+  public void getAllDocs_quotesInColumnName_failsValidation() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id with \"quotes\"");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id with \"quotes\"");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select \"id with \"\"quotes\"\"\" from testtable");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id with \"quotes\"");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id with \"quotes\"");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
-    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
-    IncrementalCheckpoint checkpointStart = new IncrementalCheckpoint(startTime.getTime());
+    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    // Fails because the validation checks for 'id with "quotes"' in the select statement
+    // but the statement contains 'id with ""quotes""'.
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage("Missing column names in main SQL query: [id with \"quotes\"]");
     dbRepository.init(repositoryContextMock);
 
-    // create target for verification
-    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
-        getTargetIncrementalChanges(LATEST_CHECKPOINT_TIMESTAMP);
+    // TODO(gemerson): Leaving this here for now in case we decide to change the validation
     Connection conn = factory.createConnection();
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        buildTable(stmt);
+        stmt.execute(
+            "create table testtable (\"id with \"\"quotes\"\"\" varchar(32) unique not null)");
+        stmt.execute("insert into testtable (\"id with \"\"quotes\"\"\") values ('id1')");
       }
-
       // query the db
-      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(checkpointStart.get())) {
-        assertNotNull(incrementalChanges);
-
-        // verify items
-        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals("id1", item.getName());
+          assertEquals(getExpectedContentString("id with &quot;quotes&quot;", "id1"),
+              getContentString(record));
+        }
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2377,38 +2550,39 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetChangesWithTimezoneNoTimestampColumn() throws Exception {
-    setupConfiguration(getUrl(), TIMEZONE_TEST_LOCALE, !USE_TIMESTAMP_COLUMN); // (e.g. +3 hrs)
+  public void getAllDocs_euroInColumnName_succeeds() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "idWith\u20acuro");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "idWith\u20acuro");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select \"idWith\u20acuro\" from testtable");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "idWith\u20acuro");
+    config.put(CONFIG_TITLE_DB_FORMAT, "idWith\u20acuro");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    // set the time for the start in remote zone (e.g. NY), but converted to local time
-    ZonedDateTime localStartTime = ZonedDateTime
-        .of(2017, 1, 12, 14, 50, 0, 0, ZoneId.of(TIMEZONE_TEST_LOCALE));
-    Timestamp startTime = Timestamp.from(localStartTime.toInstant());
-    // the traversal start time is only used as a return value, so timezones are irrelevant
-    final String traversalStartTime = "2017-01-14 10:00:00.0";
-    Timestamp traversalTime = Timestamp.valueOf(traversalStartTime);
-    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime(), traversalTime.getTime());
+    mockContent();
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
 
-    // create target for verification
-    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
-        getTargetIncrementalChanges(traversalStartTime);
     Connection conn = factory.createConnection();
     try {
       // build the db
       try (Statement stmt = conn.createStatement()) {
-        buildTable(stmt);
+        stmt.execute("create table testtable (\"idWith\u20acuro\" varchar(32) unique not null)");
+        stmt.execute("insert into testtable (\"idWith\u20acuro\") values ('id1')");
       }
-
       // query the db
-      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(null)) {
-        assertNotNull(incrementalChanges);
-
-        // verify items
-        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals("id1", item.getName());
+          assertEquals(getExpectedContentString("idWith\u20acuro", "id1"),
+              getContentString(record));
+        }
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2418,41 +2592,914 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetChangesWithTimezoneCheckpointNoTimestampColumn()
-      throws Exception {
-    setupConfiguration(getUrl(), TIMEZONE_TEST_LOCALE, !USE_TIMESTAMP_COLUMN); // e.g. +3 hrs
+  @Parameters({
+    "data-with-dash",
+    "data with spaces",
+    "data with \u20acuro",
+    "data with MixedCaseChars"
+  })
+  public void getAllDocs_charsInMetadataTitle_succeeds(String dataForTitle) throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, data");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, data from testtable");
+    config.put(IndexingItemBuilder.TITLE_FIELD, "data");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    // this start time will not actually be used since there will be a checkpoint
-    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
-    final String traversalStartTime = "2017-01-14 10:00:00.0";
-    Timestamp traversalTime = Timestamp.valueOf(traversalStartTime);
-    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime(), traversalTime.getTime());
+    mockContent();
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("create table testtable (id varchar(32) unique not null, data varchar(128))");
+        stmt.execute("insert into testtable (id, data) values ('id1', '" + dataForTitle + "')");
+      }
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals(dataForTitle, item.getMetadata().getTitle());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  private Object uniqueKeyColumnParams() {
+    return new Object[]{
+      new Object[] { "id", "id1"},
+      new Object[] { "id,textdata", "id1/textcontent"},
+      new Object[] { "id,numericdata", "id1/11"},
+      new Object[] { "textdata,numericdata", "textcontent/11"},
+      new Object[] { "numericdata, id, textdata", "11/id1/textcontent"}
+    };
+  }
+
+  @Test
+  @Parameters(method = "uniqueKeyColumnParams")
+  public void getAllDocs_uniqueKeyColumn_succeeds(String keyColumns, String key) throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, keyColumns);
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, textdata, numericdata");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, textdata, numericdata from testtable");
+    config.put(IndexingItemBuilder.TITLE_FIELD, "textdata");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    mockContent();
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("create table testtable ("
+            + "id varchar(32) unique not null, "
+            + "textdata varchar(128), "
+            + "numericdata int)");
+        stmt.execute(
+            "insert into testtable (id, textdata, numericdata) values ('id1', 'textcontent', 11)");
+      }
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals(key, item.getName());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  @Parameters({
+    "int, 123",
+    "double, 12.3", // float, double data type
+    "bigint, 9223372036854775802", // long data type
+    "boolean, false",
+    "char(3), abc",
+    "varchar(16), stringid", // string data type
+    "date, 2015-12-15",
+    "time, 23:59:59",
+    "timestamp, 2015-12-15 23:15:15.0"
+  })
+  // http://www.h2database.com/html/datatypes.html
+  public void uniqueKeyColumn_DataTypes_succeed(String columnType, String value)
+      throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, data");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, data from testtable");
+    config.put(IndexingItemBuilder.TITLE_FIELD, "data");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    mockContent();
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      try (Statement stmt = conn.createStatement()) {
+        String createSQL = String.format("create table testtable (id %s unique not null, "
+            + "data varchar(128))", columnType);
+        String insertSQL = String.format("insert into testtable (id, data) "
+            + "values('%s', 'testdata')", value);
+        stmt.execute(createSQL);
+        stmt.execute(insertSQL);
+      }
+
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          RepositoryDoc record = (RepositoryDoc) op;
+          Item item = record.getItem();
+          assertEquals(value, item.getName());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void getAllDocs_nullValueInUrlColumn_noUrlSet() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, data");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, data from testtable");
+    config.put(IndexingItemBuilder.TITLE_FIELD, "data");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "data");
+    config.put(CONFIG_TITLE_DB_FORMAT, "id");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    mockContent();
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("create table testtable (id varchar(32) unique not null, data varchar(128))");
+        stmt.execute("insert into testtable (id, data) values ('id1', 'text')");
+        stmt.execute("insert into testtable (id) values ('id2')");
+        stmt.execute("insert into testtable (id, data) values ('id3', 'text')");
+      }
+      try (CheckpointCloseableIterable<ApiOperation> allDocs =
+          dbRepository.getAllDocs(NULL_TRAVERSAL_CHECKPOINT)) {
+        for (ApiOperation op : allDocs) {
+          Item item = ((RepositoryDoc) op).getItem();
+          if (item.getName().equals("id2")) {
+            assertNull(item.getMetadata().getSourceRepositoryUrl());
+          } else {
+            assertEquals("text", item.getMetadata().getSourceRepositoryUrl());
+          }
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChangesNoInitialCheckpoint() throws Exception {
+    setupConfiguration(getUrl(), "");
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
+    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    // create target for verification
+    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
+        getTargetIncrementalChanges(LATEST_CHECKPOINT_TIMESTAMP);
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(null)) {
+        assertNotNull(incrementalChanges);
+
+        // verify items
+        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChanges() throws Exception {
+    setupConfiguration(getUrl(), "");
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
+    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    IncrementalCheckpoint checkpointStart = new IncrementalCheckpoint(startTime.getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    // create target for verification
+    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
+        getTargetIncrementalChanges(LATEST_CHECKPOINT_TIMESTAMP);
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpointStart.get())) {
+        assertNotNull(incrementalChanges);
+
+        // verify items
+        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChangesWithTimezoneNoTimestampColumn() throws Exception {
+    setupConfiguration(getUrl(), TIMEZONE_TEST_LOCALE, !USE_TIMESTAMP_COLUMN); // (e.g. +3 hrs)
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    // set the time for the start in remote zone (e.g. NY), but converted to local time
+    ZonedDateTime localStartTime = ZonedDateTime
+        .of(2017, 1, 12, 14, 50, 0, 0, ZoneId.of(TIMEZONE_TEST_LOCALE));
+    Timestamp startTime = Timestamp.from(localStartTime.toInstant());
+    // the traversal start time is only used as a return value, so timezones are irrelevant
+    final String traversalStartTime = "2017-01-14 10:00:00.0";
+    Timestamp traversalTime = Timestamp.valueOf(traversalStartTime);
+    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime(), traversalTime.getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    // create target for verification
+    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
+        getTargetIncrementalChanges(traversalStartTime);
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(null)) {
+        assertNotNull(incrementalChanges);
+
+        // verify items
+        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChangesWithTimezoneCheckpointNoTimestampColumn()
+      throws Exception {
+    setupConfiguration(getUrl(), TIMEZONE_TEST_LOCALE, !USE_TIMESTAMP_COLUMN); // e.g. +3 hrs
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    // this start time will not actually be used since there will be a checkpoint
+    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
+    final String traversalStartTime = "2017-01-14 10:00:00.0";
+    Timestamp traversalTime = Timestamp.valueOf(traversalStartTime);
+    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime(), traversalTime.getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+    // set the time for the start in remote zone (e.g. NY), but converted to local time
+    ZonedDateTime localStartTime = ZonedDateTime
+        .of(2017, 1, 12, 14, 50, 0, 0, ZoneId.of(TIMEZONE_TEST_LOCALE));
+    Timestamp localTime = Timestamp.from(localStartTime.toInstant());
+    IncrementalCheckpoint checkpointLocal = new IncrementalCheckpoint(localTime.getTime());
+
+    // create target for verification
+    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
+        getTargetIncrementalChanges(traversalStartTime);
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpointLocal.get())) {
+        assertNotNull(incrementalChanges);
+
+        // verify items
+        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChangesWithTimezone1() throws Exception {
+    // use local timezone (wherever this may be run)
+    changesWithTimezone(getUrl());
+  }
+
+  @Test
+  public void testGetChangesWithTimezone2() throws Exception {
+    // store local default timezone to restore this thread after change
+    ZoneId defaultZone = TimeZone.getDefault().toZoneId();
+    // use first test timezone
+    TimeZone.setDefault(TimeZone.getTimeZone(ZoneId.of(TIMEZONE_TEST_LOCALE)));
+    try {
+      changesWithTimezone(getUrl());
+    } finally {
+      // restore default
+      TimeZone.setDefault(TimeZone.getTimeZone(defaultZone));
+    }
+  }
+
+  @Test
+  public void testGetChangesWithTimezone3() throws Exception {
+    // store local default timezone to restore this thread after change
+    ZoneId defaultZone = TimeZone.getDefault().toZoneId();
+    // use a different test timezone
+    TimeZone.setDefault(TimeZone.getTimeZone(ZoneId.of(TIMEZONE_TEST_LOCALE_2)));
+    try {
+      changesWithTimezone(getUrl());
+    } finally {
+      // restore default
+      TimeZone.setDefault(TimeZone.getTimeZone(defaultZone));
+    }
+  }
+
+  private void changesWithTimezone(String url) throws Exception {
+    // Note: since these tests can be run in parallel, it's best to use different db names
+    setupConfiguration(url, TIMEZONE_TEST_LOCALE); // e.g. +3 hrs
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    // this start time will not actually be used since there will be a checkpoint
+    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
+    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+    // set the time for the start in remote zone (e.g. NY), but converted to local time
+    ZonedDateTime localStartTime = ZonedDateTime
+        .of(2017, 1, 12, 14, 50, 0, 0, ZoneId.of(TIMEZONE_TEST_LOCALE));
+    Timestamp localTime = Timestamp.from(localStartTime.toInstant());
+    IncrementalCheckpoint checkpointLocal = new IncrementalCheckpoint(localTime.getTime());
+
+    // start with the database latest timestamp, force it to be in the remote db timezone (e.g. NY),
+    // then convert to local time for verification
+    Timestamp latestCheckpoint = Timestamp.valueOf(LATEST_CHECKPOINT_TIMESTAMP);
+    LocalDateTime localDateTime = LocalDateTime
+        .ofInstant(latestCheckpoint.toInstant(), ZoneId.systemDefault());
+    ZonedDateTime dbLocalZonedDateTime = ZonedDateTime
+        .of(localDateTime, ZoneId.of(TIMEZONE_TEST_LOCALE));
+    Timestamp latestLocalCheckpoint = Timestamp.from(dbLocalZonedDateTime.toInstant());
+    // create target for verification
+    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
+        getTargetIncrementalChanges(latestLocalCheckpoint.toString()); // e.g. NY time - 3hrs
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // query the db
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpointLocal.get())) {
+        assertNotNull(incrementalChanges);
+
+        // verify items
+        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testEmptyGetChanges() throws Exception {
+    setupConfiguration(getUrl(), "");
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
+    Timestamp sinceTime = Timestamp.valueOf("2017-01-13 14:50:00.0");
+    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    IncrementalCheckpoint checkpoint1 = new IncrementalCheckpoint(startTime.getTime());
+    dbRepository.init(repositoryContextMock);
+
+    // create target for verification
+    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
+        getTargetIncrementalChanges(LATEST_CHECKPOINT_TIMESTAMP);
+    Connection conn = factory.createConnection();
+    try {
+      // build the db
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // new query with updated checkpoint - two records should be returned
+      byte[] checkpoint2;
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpoint1.get())) {
+        assertNotNull(incrementalChanges);
+
+        // verify items
+        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+        checkpoint2 = incrementalChanges.getCheckpoint();
+      }
+
+      // query the db - no records should be returned
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpoint2)) {
+        assertNotNull(incrementalChanges);
+        assertIterableEquals(
+                new CheckpointCloseableIterableImpl.Builder<ApiOperation>(Collections.emptyList())
+                .setCheckpoint(checkpoint2).build(),
+                incrementalChanges);
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  /**
+   * common configuration builder(s)
+   */
+  private void setupConfiguration(String url, String timezone) {
+    setupConfiguration(url, timezone, USE_TIMESTAMP_COLUMN); // default to use timestamp col
+  }
+
+  private void setupConfiguration(String url, String timezone, boolean timestampCol) {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, url);
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    // order allows for simpler verification
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp"
+            + (timestampCol ? " as " + ColumnManager.TIMESTAMP_COLUMN : "")
+            + " from testtable "
+            + "where lastmod_timestamp > ? order by lastmod_timestamp desc");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    if (!timezone.isEmpty()) {
+      config.put(ColumnManager.DB_INC_UPDATE_TIMEZONE, timezone);
+    }
+    setupConfig.initConfig(config);
+  }
+
+  /** common target builder */
+  private CheckpointCloseableIterable<ApiOperation> getTargetIncrementalChanges(
+      String checkpointTime) {
+    GoldenContent goldenContent = new GoldenContent();
+    String targetContentId3 = "<!DOCTYPE html>\n<html lang='en'>\n<head>\n"
+        + "<meta http-equiv='Content-Type' content='text/html; charset=utf-8'/>\n"
+        + "<title>Mike Brown</title>\n</head>\n<body>\n"
+        + "<div id='name'>\n  <p>name:</p>\n  <h1>Mike Brown</h1>\n</div>\n"
+        + "<div id='phone'>\n  <p>phone:</p>\n  <p><small>3124</small></p>\n</div>\n"
+        + "</body>\n</html>\n";
+    String targetContentId5 = "<!DOCTYPE html>\n<html lang='en'>\n<head>\n"
+        + "<meta http-equiv='Content-Type' content='text/html; charset=utf-8'/>\n"
+        + "<title>Betty Black</title>\n</head>\n<body>\n"
+        + "<div id='name'>\n  <p>name:</p>\n  <h1>Betty Black</h1>\n</div>\n"
+        + "<div id='phone'>\n  <p>phone:</p>\n  <p><small>5123</small></p>\n</div>\n"
+        + "</body>\n</html>\n";
+    goldenContent.setContent(targetContentId3);
+    goldenContent.setContent(targetContentId5);
+    multiMockContent(goldenContent);
+    Item itemId3 = new Item()
+        .setName("id3")
+        .setAcl(null)
+        .setItemType(ItemType.CONTENT_ITEM.name());
+    itemId3.setMetadata(new ItemMetadata().setSourceRepositoryUrl("id3"));
+    RepositoryDoc docId3 = new RepositoryDoc.Builder().setItem(itemId3)
+        .setContent(goldenContent.getContent(0), ContentFormat.HTML).build();
+    Item itemId5 = new Item()
+        .setName("id5")
+        .setAcl(null)
+        .setItemType(ItemType.CONTENT_ITEM.name());
+    itemId5.setMetadata(new ItemMetadata().setSourceRepositoryUrl("id5"));
+    RepositoryDoc docId5 = new RepositoryDoc.Builder().setItem(itemId5)
+        .setContent(goldenContent.getContent(1), ContentFormat.HTML).build();
+    List<ApiOperation> targetDocs = Arrays.asList(docId3, docId5);
+    IncrementalCheckpoint checkpoint =
+        new IncrementalCheckpoint(Timestamp.valueOf(checkpointTime).getTime());
+    return new CheckpointCloseableIterableImpl.Builder<ApiOperation>(targetDocs)
+        .setCheckpoint(checkpoint.get()).build();
+  }
+
+  /** common table builder */
+  private void buildTable(Statement stmt) throws SQLException {
+    stmt.execute("create table testtable "
+        + "(id varchar(32) unique not null, name varchar(128), phone varchar(16), "
+        + "lastmod_timestamp timestamp)");
+    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
+        + "values ('id2', 'Mary Jones', '2134', '2017-01-11 14:55:22.2')");
+    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
+        + "values ('id1', 'Joe Smith', '1234', '2017-01-12 13:59:11.1')");
+    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
+        + "values ('id3', 'Mike Brown', '3124', '" + LATEST_CHECKPOINT_TIMESTAMP + "')");
+    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
+        + "values ('id5', 'Betty Black', '5123', '2017-01-12 14:55:55.5')");
+    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
+        + "values ('id4', 'Sue Green', '4123', '2017-01-12 14:44:44.4')");
+  }
+
+  @Test
+  public void testGetChangesSqlError() throws Exception {
+    setupConfiguration(getUrl(), "");
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+    thrown.expect(RepositoryException.class);
+    thrown.expectMessage("Error with SQL query");
+    try {
+      dbRepository.getChanges(null); // no table
+    } finally {
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChanges_batchSize() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp > ? order by lastmod_timestamp, id");
+    config.put(ColumnManager.DB_INC_UPDATE_BATCH_SIZE, "2");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    when(helperMock.getCurrentTime())
+        .thenReturn(Timestamp.valueOf("2017-01-14 00:00:00.0").getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+        // id6 has the same timestamp as id1, so they are returned in the same batch.
+        stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
+            + "values ('id6', 'Ann White', '6123', '2017-01-12 13:59:11.1')");
+      }
+
+      List<List<String>> expectedBatches = ImmutableList.of(
+          ImmutableList.of("id2", "id1", "id6"),
+          ImmutableList.of("id4", "id5"),
+          ImmutableList.of("id3"));
+      List<String> expectedTimestamps = ImmutableList.of(
+          "2017-01-12 13:59:11.1", "2017-01-12 14:55:55.5", LATEST_CHECKPOINT_TIMESTAMP);
+
+      byte[] checkpoint = new IncrementalCheckpoint(
+          Timestamp.valueOf("2017-01-01 00:00:00.0").getTime()).get();
+      for (int i = 0; i < expectedBatches.size(); i++) {
+        try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+            dbRepository.getChanges(checkpoint)) {
+          assertEquals(expectedBatches.get(i),
+              ImmutableList.copyOf(Iterables.transform(incrementalChanges,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertEquals(i < 2, incrementalChanges.hasMore());
+          checkpoint = incrementalChanges.getCheckpoint();
+          assertEquals(Timestamp.valueOf(expectedTimestamps.get(i)).getTime(),
+              IncrementalCheckpoint.parse(checkpoint).getLastUpdateTime());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChanges_sequenceColumn() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL, "select id, name from seqtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, ver as " + ColumnManager.SEQUENCE_COLUMN
+            + " from seqtable where seq > ? order by seq");
+    config.put(ColumnManager.DB_INC_UPDATE_START_SEQUENCE_SQL,
+        "select max(ver) as " + ColumnManager.SEQUENCE_COLUMN + " from seqtable");
+    config.put(ColumnManager.DB_INC_UPDATE_BATCH_SIZE, "2");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      try (Statement stmt = conn.createStatement()) {
+        // ver is a big-endian copy of seq, like a SQL Server rowversion.
+        stmt.execute("create table seqtable (id varchar(32) unique not null, name varchar(128),"
+            + " seq bigint, ver binary(8))");
+        stmt.execute("insert into seqtable (id, name, seq, ver) values "
+            + "('id1', 'Jones May', 1, X'0000000000000001'), "
+            + "('id2', 'Joe Smith', 2, X'0000000000000002')");
+      }
+      // The records that exist at startup are left to the full traversal.
+      dbRepository.init(repositoryContextMock);
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("insert into seqtable (id, name, seq, ver) values "
+            + "('id3', 'Mary Jane', 3, X'0000000000000003'), "
+            + "('id4', 'Tom Jones', 4, X'0000000000000004'), "
+            + "('id5', 'Jane Doe', 300, X'000000000000012C')");
+      }
+
+      List<List<String>> expectedBatches = ImmutableList.of(
+          ImmutableList.of("id3", "id4"),
+          ImmutableList.of("id5"));
+      List<Long> expectedSequences = ImmutableList.of(4L, 300L);
+
+      byte[] checkpoint = null;
+      for (int i = 0; i < expectedBatches.size(); i++) {
+        try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+            dbRepository.getChanges(checkpoint)) {
+          assertEquals(expectedBatches.get(i),
+              ImmutableList.copyOf(Iterables.transform(incrementalChanges,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertEquals(i == 0, incrementalChanges.hasMore());
+          checkpoint = incrementalChanges.getCheckpoint();
+          assertEquals((long) expectedSequences.get(i),
+              SequenceCheckpoint.parse(checkpoint).getLastSequence());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChanges_timeSlices() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp > ? and lastmod_timestamp <= ?"
+            + " order by lastmod_timestamp, id");
+    config.put(ColumnManager.DB_INC_UPDATE_SLICE_SECONDS, "86400");
+    config.put(ColumnManager.DB_INC_UPDATE_SLICE_ROWS, "1");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    when(helperMock.getCurrentTime())
+        .thenReturn(Timestamp.valueOf("2017-01-14 00:00:00.0").getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // The second slice has too many records, so the later slices are half as long.
+      List<List<String>> expectedSlices = ImmutableList.of(
+          ImmutableList.of("id2"),
+          ImmutableList.of("id1", "id4", "id5"),
+          ImmutableList.of("id3"),
+          ImmutableList.of());
+      // The last slice is empty, so the last update time stays at the end of the one before.
+      List<String> expectedTimestamps = ImmutableList.of("2017-01-12 00:00:00.0",
+          "2017-01-13 00:00:00.0", "2017-01-13 12:00:00.0", "2017-01-13 12:00:00.0");
+      long day = TimeUnit.DAYS.toMillis(1);
+      List<Long> expectedSliceMillis = ImmutableList.of(day, day / 2, day / 2, day / 2);
+
+      byte[] checkpoint = new IncrementalCheckpoint(
+          Timestamp.valueOf("2017-01-11 00:00:00.0").getTime()).get();
+      for (int i = 0; i < expectedSlices.size(); i++) {
+        try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+            dbRepository.getChanges(checkpoint)) {
+          assertEquals(expectedSlices.get(i),
+              ImmutableList.copyOf(Iterables.transform(incrementalChanges,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertEquals(i < 3, incrementalChanges.hasMore());
+          checkpoint = incrementalChanges.getCheckpoint();
+          IncrementalCheckpoint parsed = IncrementalCheckpoint.parse(checkpoint);
+          assertEquals(Timestamp.valueOf(expectedTimestamps.get(i)).getTime(),
+              parsed.getLastUpdateTime());
+          assertEquals(expectedSliceMillis.get(i).longValue(), parsed.getSliceMillis());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChanges_timeSlices_recordBehindClock() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp > ? and lastmod_timestamp <= ?");
+    config.put(ColumnManager.DB_INC_UPDATE_SLICE_SECONDS, "86400");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    when(helperMock.getCurrentTime())
+        .thenReturn(Timestamp.valueOf("2017-01-14 00:00:00.0").getTime());
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    dbRepository.init(repositoryContextMock);
+
+    Connection conn = factory.createConnection();
+    try {
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+
+      // The record is committed after the first poll, with a timestamp behind the connector's
+      // clock at that poll, so the last update time must not move past it.
+      List<String> updates = Arrays.asList(
+          null,
+          "insert into testtable (id, name, phone, lastmod_timestamp) "
+              + "values ('id6', 'Late Commit', '6123', '2017-01-13 23:00:00.0')");
+      List<List<String>> expectedChanges = ImmutableList.of(
+          ImmutableList.of(),
+          ImmutableList.of("id6"));
+      List<String> expectedTimestamps =
+          ImmutableList.of(LATEST_CHECKPOINT_TIMESTAMP, "2017-01-13 23:00:00.0");
+      byte[] checkpoint = new IncrementalCheckpoint(
+          Timestamp.valueOf(LATEST_CHECKPOINT_TIMESTAMP).getTime()).get();
+      for (int i = 0; i < updates.size(); i++) {
+        if (updates.get(i) != null) {
+          try (Statement stmt = conn.createStatement()) {
+            stmt.execute(updates.get(i));
+          }
+        }
+        try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+            dbRepository.getChanges(checkpoint)) {
+          assertEquals(expectedChanges.get(i),
+              ImmutableList.copyOf(Iterables.transform(incrementalChanges,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertFalse(incrementalChanges.hasMore());
+          checkpoint = incrementalChanges.getCheckpoint();
+          assertEquals(Timestamp.valueOf(expectedTimestamps.get(i)).getTime(),
+              IncrementalCheckpoint.parse(checkpoint).getLastUpdateTime());
+        }
+      }
+    } finally {
+      factory.releaseConnection(conn);
+      dbRepository.close();
+      factory.shutdown();
+    }
+  }
+
+  @Test
+  public void testGetChanges_parallelCatchUp() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp > ? and lastmod_timestamp <= ?");
+    config.put(ColumnManager.DB_INC_UPDATE_SLICE_SECONDS, "86400");
+    config.put(DatabaseRepository.DB_CATCH_UP_THREADS, "2");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
+    InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
+    when(helperMock.getConnectionFactory()).thenReturn(factory);
+    when(helperMock.getCurrentTime())
+        .thenReturn(Timestamp.valueOf("2017-01-14 00:00:00.0").getTime());
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
-    // set the time for the start in remote zone (e.g. NY), but converted to local time
-    ZonedDateTime localStartTime = ZonedDateTime
-        .of(2017, 1, 12, 14, 50, 0, 0, ZoneId.of(TIMEZONE_TEST_LOCALE));
-    Timestamp localTime = Timestamp.from(localStartTime.toInstant());
-    IncrementalCheckpoint checkpointLocal = new IncrementalCheckpoint(localTime.getTime());
 
-    // create target for verification
-    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
-        getTargetIncrementalChanges(traversalStartTime);
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
         buildTable(stmt);
       }
 
-      // query the db
-      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(checkpointLocal.get())) {
-        assertNotNull(incrementalChanges);
-
-        // verify items
-        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      // Two slices are read at once, and the records may be returned in any order.
+      List<Set<String>> expectedRecords = ImmutableList.of(
+          ImmutableSet.of("id2", "id1", "id4", "id5"),
+          ImmutableSet.of("id3"));
+      List<String> expectedTimestamps =
+          ImmutableList.of("2017-01-13 00:00:00.0", LATEST_CHECKPOINT_TIMESTAMP);
+
+      byte[] checkpoint = new IncrementalCheckpoint(
+          Timestamp.valueOf("2017-01-11 00:00:00.0").getTime()).get();
+      for (int i = 0; i < expectedRecords.size(); i++) {
+        try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+            dbRepository.getChanges(checkpoint)) {
+          assertEquals(expectedRecords.get(i),
+              ImmutableSet.copyOf(Iterables.transform(incrementalChanges,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          assertEquals(i == 0, incrementalChanges.hasMore());
+          checkpoint = incrementalChanges.getCheckpoint();
+          assertEquals(Timestamp.valueOf(expectedTimestamps.get(i)).getTime(),
+              IncrementalCheckpoint.parse(checkpoint).getLastUpdateTime());
+        }
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2462,80 +3509,60 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testGetChangesWithTimezone1() throws Exception {
-    // use local timezone (wherever this may be run)
-    changesWithTimezone(getUrl());
-  }
-
-  @Test
-  public void testGetChangesWithTimezone2() throws Exception {
-    // store local default timezone to restore this thread after change
-    ZoneId defaultZone = TimeZone.getDefault().toZoneId();
-    // use first test timezone
-    TimeZone.setDefault(TimeZone.getTimeZone(ZoneId.of(TIMEZONE_TEST_LOCALE)));
-    try {
-      changesWithTimezone(getUrl());
-    } finally {
-      // restore default
-      TimeZone.setDefault(TimeZone.getTimeZone(defaultZone));
-    }
+  public void testInit_catchUpWithoutSlices() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(DatabaseRepository.DB_CATCH_UP_THREADS, "2");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(ColumnManager.DB_INC_UPDATE_SLICE_SECONDS));
+    dbRepository.init(repositoryContextMock);
   }
 
   @Test
-  public void testGetChangesWithTimezone3() throws Exception {
-    // store local default timezone to restore this thread after change
-    ZoneId defaultZone = TimeZone.getDefault().toZoneId();
-    // use a different test timezone
-    TimeZone.setDefault(TimeZone.getTimeZone(ZoneId.of(TIMEZONE_TEST_LOCALE_2)));
-    try {
-      changesWithTimezone(getUrl());
-    } finally {
-      // restore default
-      TimeZone.setDefault(TimeZone.getTimeZone(defaultZone));
-    }
-  }
-
-  private void changesWithTimezone(String url) throws Exception {
-    // Note: since these tests can be run in parallel, it's best to use different db names
-    setupConfiguration(url, TIMEZONE_TEST_LOCALE); // e.g. +3 hrs
+  public void testGetChanges_adaptivePolling() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp > ?");
+    config.put(DatabaseRepository.DB_POLL_MAX_INTERVAL_SECONDS, "60");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    // this start time will not actually be used since there will be a checkpoint
-    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
-    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    long now = Timestamp.valueOf("2017-01-14 00:00:00.0").getTime();
+    when(helperMock.getCurrentTime()).thenReturn(now);
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
-    // set the time for the start in remote zone (e.g. NY), but converted to local time
-    ZonedDateTime localStartTime = ZonedDateTime
-        .of(2017, 1, 12, 14, 50, 0, 0, ZoneId.of(TIMEZONE_TEST_LOCALE));
-    Timestamp localTime = Timestamp.from(localStartTime.toInstant());
-    IncrementalCheckpoint checkpointLocal = new IncrementalCheckpoint(localTime.getTime());
 
-    // start with the database latest timestamp, force it to be in the remote db timezone (e.g. NY),
-    // then convert to local time for verification
-    Timestamp latestCheckpoint = Timestamp.valueOf(LATEST_CHECKPOINT_TIMESTAMP);
-    LocalDateTime localDateTime = LocalDateTime
-        .ofInstant(latestCheckpoint.toInstant(), ZoneId.systemDefault());
-    ZonedDateTime dbLocalZonedDateTime = ZonedDateTime
-        .of(localDateTime, ZoneId.of(TIMEZONE_TEST_LOCALE));
-    Timestamp latestLocalCheckpoint = Timestamp.from(dbLocalZonedDateTime.toInstant());
-    // create target for verification
-    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
-        getTargetIncrementalChanges(latestLocalCheckpoint.toString()); // e.g. NY time - 3hrs
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
         buildTable(stmt);
       }
 
-      // query the db
+      byte[] checkpoint = new IncrementalCheckpoint(now).get();
       try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(checkpointLocal.get())) {
-        assertNotNull(incrementalChanges);
+          dbRepository.getChanges(checkpoint)) {
+        assertEquals(ImmutableList.of(), ImmutableList.copyOf(incrementalChanges));
+      }
+      // No changes were found, so the next poll is skipped until the interval has passed.
+      assertNull(dbRepository.getChanges(checkpoint));
 
-        // verify items
-        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
+      when(helperMock.getCurrentTime()).thenReturn(now + PollScheduler.MIN_INTERVAL_MILLIS);
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpoint)) {
+        assertNotNull(incrementalChanges);
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2545,46 +3572,55 @@ public class DatabaseRepositoryTest {
   }
 
   @Test
-  public void testEmptyGetChanges() throws Exception {
-    setupConfiguration(getUrl(), "");
+  public void testGetChanges_recentItems() throws Exception {
+    Properties config = new Properties();
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
+    config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
+    config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
+    config.put(ColumnManager.DB_ALL_RECORDS_SQL,
+        "select id, name, phone, lastmod_timestamp from testtable");
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp >= ?");
+    config.put(DatabaseRepository.DB_RECENT_ITEMS_SIZE, "10");
+    config.put(UrlBuilder.CONFIG_COLUMNS, "id");
+    config.put(CONFIG_TITLE_DB_FORMAT, "name");
+    config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
+    setupConfig.initConfig(config);
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
-    Timestamp startTime = Timestamp.valueOf("2017-01-12 14:50:00.0");
-    Timestamp sinceTime = Timestamp.valueOf("2017-01-13 14:50:00.0");
-    when(helperMock.getCurrentTime()).thenReturn(startTime.getTime());
+    when(helperMock.getCurrentTime())
+        .thenReturn(Timestamp.valueOf("2017-01-14 00:00:00.0").getTime());
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
-    IncrementalCheckpoint checkpoint1 = new IncrementalCheckpoint(startTime.getTime());
     dbRepository.init(repositoryContextMock);
 
-    // create target for verification
-    CheckpointCloseableIterable<ApiOperation> targetIncrementalChanges =
-        getTargetIncrementalChanges(LATEST_CHECKPOINT_TIMESTAMP);
     Connection conn = factory.createConnection();
     try {
-      // build the db
       try (Statement stmt = conn.createStatement()) {
         buildTable(stmt);
       }
 
-      // new query with updated checkpoint - two records should be returned
-      byte[] checkpoint2;
-      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(checkpoint1.get())) {
-        assertNotNull(incrementalChanges);
-
-        // verify items
-        assertIterableEquals(targetIncrementalChanges, incrementalChanges);
-        checkpoint2 = incrementalChanges.getCheckpoint();
-      }
-
-      // query the db - no records should be returned
-      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
-          dbRepository.getChanges(checkpoint2)) {
-        assertNotNull(incrementalChanges);
-        assertIterableEquals(
-                new CheckpointCloseableIterableImpl.Builder<ApiOperation>(Collections.emptyList())
-                .setCheckpoint(checkpoint2).build(),
-                incrementalChanges);
+      // The record with the checkpoint timestamp is read again, but only sent if it changed.
+      List<List<String>> expectedPolls = ImmutableList.of(
+          ImmutableList.of("id3"),
+          ImmutableList.of(),
+          ImmutableList.of("id3"));
+      byte[] checkpoint = new IncrementalCheckpoint(
+          Timestamp.valueOf(LATEST_CHECKPOINT_TIMESTAMP).getTime()).get();
+      for (int i = 0; i < expectedPolls.size(); i++) {
+        if (i == 2) {
+          try (Statement stmt = conn.createStatement()) {
+            stmt.execute("update testtable set name = 'Mike Green' where id = 'id3'");
+          }
+        }
+        try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+            dbRepository.getChanges(checkpoint)) {
+          assertEquals(expectedPolls.get(i),
+              ImmutableList.copyOf(Iterables.transform(incrementalChanges,
+                  v -> ((RepositoryDoc) v).getItem().getName())));
+          checkpoint = incrementalChanges.getCheckpoint();
+        }
       }
     } finally {
       factory.releaseConnection(conn);
@@ -2593,110 +3629,102 @@ public class DatabaseRepositoryTest {
     }
   }
 
-  /**
-   * common configuration builder(s)
-   */
-  private void setupConfiguration(String url, String timezone) {
-    setupConfiguration(url, timezone, USE_TIMESTAMP_COLUMN); // default to use timestamp col
+  @Test
+  public void testInit_invalidRecentItemsSize() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(DatabaseRepository.DB_RECENT_ITEMS_SIZE, "-1");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(DatabaseRepository.DB_RECENT_ITEMS_SIZE));
+    dbRepository.init(repositoryContextMock);
   }
 
-  private void setupConfiguration(String url, String timezone, boolean timestampCol) {
+  @Test
+  public void testGetChanges_coalesceWindow() throws Exception {
     Properties config = new Properties();
-    config.put(DatabaseConnectionFactory.DB_URL, url);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
     config.put(ColumnManager.DB_UNIQUE_KEY_COLUMNS, "id");
     config.put(ColumnManager.DB_ALL_COLUMNS, "id, name, phone, lastmod_timestamp");
     config.put(ColumnManager.DB_CONTENT_COLUMNS, "name, phone");
     config.put(ColumnManager.DB_ALL_RECORDS_SQL,
         "select id, name, phone, lastmod_timestamp from testtable");
-    // order allows for simpler verification
     config.put(ColumnManager.DB_INC_UPDATE_SQL,
-        "select id, name, phone, lastmod_timestamp"
-            + (timestampCol ? " as " + ColumnManager.TIMESTAMP_COLUMN : "")
-            + " from testtable "
-            + "where lastmod_timestamp > ? order by lastmod_timestamp desc");
+        "select id, name, phone, lastmod_timestamp as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod_timestamp > ?");
+    config.put(DatabaseRepository.DB_COALESCE_WINDOW_SECONDS, "60");
     config.put(UrlBuilder.CONFIG_COLUMNS, "id");
     config.put(CONFIG_TITLE_DB_FORMAT, "name");
     config.put(DefaultAcl.DEFAULT_ACL_MODE, DefaultAclMode.FALLBACK.toString());
-    if (!timezone.isEmpty()) {
-      config.put(ColumnManager.DB_INC_UPDATE_TIMEZONE, timezone);
-    }
     setupConfig.initConfig(config);
-  }
-
-  /** common target builder */
-  private CheckpointCloseableIterable<ApiOperation> getTargetIncrementalChanges(
-      String checkpointTime) {
-    GoldenContent goldenContent = new GoldenContent();
-    String targetContentId3 = "<!DOCTYPE html>\n<html lang='en'>\n<head>\n"
-        + "<meta http-equiv='Content-Type' content='text/html; charset=utf-8'/>\n"
-        + "<title>Mike Brown</title>\n</head>\n<body>\n"
-        + "<div id='name'>\n  <p>name:</p>\n  <h1>Mike Brown</h1>\n</div>\n"
-        + "<div id='phone'>\n  <p>phone:</p>\n  <p><small>3124</small></p>\n</div>\n"
-        + "</body>\n</html>\n";
-    String targetContentId5 = "<!DOCTYPE html>\n<html lang='en'>\n<head>\n"
-        + "<meta http-equiv='Content-Type' content='text/html; charset=utf-8'/>\n"
-        + "<title>Betty Black</title>\n</head>\n<body>\n"
-        + "<div id='name'>\n  <p>name:</p>\n  <h1>Betty Black</h1>\n</div>\n"
-        + "<div id='phone'>\n  <p>phone:</p>\n  <p><small>5123</small></p>\n</div>\n"
-        + "</body>\n</html>\n";
-    goldenContent.setContent(targetContentId3);
-    goldenContent.setContent(targetContentId5);
-    multiMockContent(goldenContent);
-    Item itemId3 = new Item()
-        .setName("id3")
-        .setAcl(null)
-        .setItemType(ItemType.CONTENT_ITEM.name());
-    itemId3.setMetadata(new ItemMetadata().setSourceRepositoryUrl("id3"));
-    RepositoryDoc docId3 = new RepositoryDoc.Builder().setItem(itemId3)
-        .setContent(goldenContent.getContent(0), ContentFormat.HTML).build();
-    Item itemId5 = new Item()
-        .setName("id5")
-        .setAcl(null)
-        .setItemType(ItemType.CONTENT_ITEM.name());
-    itemId5.setMetadata(new ItemMetadata().setSourceRepositoryUrl("id5"));
-    RepositoryDoc docId5 = new RepositoryDoc.Builder().setItem(itemId5)
-        .setContent(goldenContent.getContent(1), ContentFormat.HTML).build();
-    List<ApiOperation> targetDocs = Arrays.asList(docId3, docId5);
-    IncrementalCheckpoint checkpoint =
-        new IncrementalCheckpoint(Timestamp.valueOf(checkpointTime).getTime());
-    return new CheckpointCloseableIterableImpl.Builder<ApiOperation>(targetDocs)
-        .setCheckpoint(checkpoint.get()).build();
-  }
-
-  /** common table builder */
-  private void buildTable(Statement stmt) throws SQLException {
-    stmt.execute("create table testtable "
-        + "(id varchar(32) unique not null, name varchar(128), phone varchar(16), "
-        + "lastmod_timestamp timestamp)");
-    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
-        + "values ('id2', 'Mary Jones', '2134', '2017-01-11 14:55:22.2')");
-    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
-        + "values ('id1', 'Joe Smith', '1234', '2017-01-12 13:59:11.1')");
-    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
-        + "values ('id3', 'Mike Brown', '3124', '" + LATEST_CHECKPOINT_TIMESTAMP + "')");
-    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
-        + "values ('id5', 'Betty Black', '5123', '2017-01-12 14:55:55.5')");
-    stmt.execute("insert into testtable (id, name, phone, lastmod_timestamp) "
-        + "values ('id4', 'Sue Green', '4123', '2017-01-12 14:44:44.4')");
-  }
-
-  @Test
-  public void testGetChangesSqlError() throws Exception {
-    setupConfiguration(getUrl(), "");
     InMemoryDBConnectionFactory factory = new InMemoryDBConnectionFactory();
     when(helperMock.getConnectionFactory()).thenReturn(factory);
+    long now = Timestamp.valueOf("2017-01-14 00:00:00.0").getTime();
+    when(helperMock.getCurrentTime()).thenReturn(now);
     DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
     dbRepository.init(repositoryContextMock);
-    thrown.expect(RepositoryException.class);
-    thrown.expectMessage("Error with SQL query");
+
+    Connection conn = factory.createConnection();
     try {
-      dbRepository.getChanges(null); // no table
+      try (Statement stmt = conn.createStatement()) {
+        buildTable(stmt);
+      }
+      byte[] checkpoint = new IncrementalCheckpoint(
+          Timestamp.valueOf("2017-01-01 00:00:00.0").getTime()).get();
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpoint)) {
+        assertEquals(5, Iterables.size(incrementalChanges));
+        checkpoint = incrementalChanges.getCheckpoint();
+      }
+
+      try (Statement stmt = conn.createStatement()) {
+        stmt.execute("update testtable set name = 'Mike Green', "
+            + "lastmod_timestamp = '2017-01-13 09:00:00.0' where id = 'id3'");
+      }
+      // id3 was sent within the window, so it is deferred and the checkpoint is held before it.
+      long updateTime = Timestamp.valueOf("2017-01-13 09:00:00.0").getTime();
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpoint)) {
+        assertEquals(ImmutableList.of(), ImmutableList.copyOf(incrementalChanges));
+        checkpoint = incrementalChanges.getCheckpoint();
+        assertEquals(updateTime - 1, IncrementalCheckpoint.parse(checkpoint).getLastUpdateTime());
+      }
+
+      when(helperMock.getCurrentTime()).thenReturn(now + 60000);
+      try (CheckpointCloseableIterable<ApiOperation> incrementalChanges =
+          dbRepository.getChanges(checkpoint)) {
+        assertEquals(ImmutableList.of("id3"),
+            ImmutableList.copyOf(Iterables.transform(incrementalChanges,
+                v -> ((RepositoryDoc) v).getItem().getName())));
+        checkpoint = incrementalChanges.getCheckpoint();
+        assertEquals(updateTime, IncrementalCheckpoint.parse(checkpoint).getLastUpdateTime());
+      }
     } finally {
+      factory.releaseConnection(conn);
       dbRepository.close();
       factory.shutdown();
     }
   }
 
+  @Test
+  public void testInit_coalesceWindowWithBatchSize() throws Exception {
+    Properties config = new Properties();
+    setAllMandatory(config);
+    config.put(DatabaseConnectionFactory.DB_URL, getUrl());
+    config.put(ColumnManager.DB_INC_UPDATE_SQL,
+        "select id, name, phone, lastmod as " + ColumnManager.TIMESTAMP_COLUMN
+            + " from testtable where lastmod > ? order by lastmod");
+    config.put(ColumnManager.DB_INC_UPDATE_BATCH_SIZE, "10");
+    config.put(DatabaseRepository.DB_COALESCE_WINDOW_SECONDS, "60");
+    setupConfig.initConfig(config);
+    DatabaseRepository dbRepository = new DatabaseRepository(helperMock);
+    thrown.expect(InvalidConfigurationException.class);
+    thrown.expectMessage(containsString(DatabaseRepository.DB_COALESCE_WINDOW_SECONDS));
+    dbRepository.init(repositoryContextMock);
+  }
+
   @Test
   public void testGetChangesIncUpdateUndefined() throws Exception {
     Properties config = new Properties();
@@ -2816,6 +3844,21 @@ public class DatabaseRepositoryTest {
     assertEquals(1, offset.getOffset());
   }
 
+  @Test
+  public void testOrderedCheckpointUpdater() {
+    FullCheckpoint checkpoint = new FullCheckpoint().setPagination(Pagination.OFFSET);
+    OrderedCheckpointUpdater updater = new OrderedCheckpointUpdater(checkpoint);
+
+    updater.complete(1, Collections.emptyMap());
+    updater.complete(2, Collections.emptyMap());
+    assertEquals(0, checkpoint.getOffset());
+    updater.complete(0, Collections.emptyMap());
+    assertEquals(3, checkpoint.getOffset());
+    updater.complete(4, Collections.emptyMap());
+    assertEquals(3, checkpoint.getOffset());
+    assertEquals(3, updater.getCommittedCount());
+  }
+
   @Test
   public void testIncrementalCheckpoint() throws RepositoryException {
     IncrementalCheckpoint fromNothing = new IncrementalCheckpoint();
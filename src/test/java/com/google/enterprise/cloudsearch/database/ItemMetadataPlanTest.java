@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.api.services.cloudsearch.v1.model.Item;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.enterprise.cloudsearch.sdk.config.Configuration.ResetConfigRule;
+import com.google.enterprise.cloudsearch.sdk.config.Configuration.SetupConfigRule;
+import com.google.enterprise.cloudsearch.sdk.indexing.IndexingItemBuilder;
+import com.google.enterprise.cloudsearch.sdk.indexing.IndexingItemBuilder.ItemType;
+import java.sql.Timestamp;
+import java.util.Properties;
+import org.junit.Rule;
+import org.junit.Test;
+
+/** Tests for the ItemMetadataPlan class. */
+public class ItemMetadataPlanTest {
+
+  @Rule public ResetConfigRule resetConfig = new ResetConfigRule();
+  @Rule public SetupConfigRule setupConfig = SetupConfigRule.uninitialized();
+
+  @Test
+  public void testCompile_matchesConfiguration() {
+    Properties config = new Properties();
+    config.put(IndexingItemBuilder.TITLE_FIELD, "name");
+    config.put(IndexingItemBuilder.UPDATE_TIME_FIELD, "modified");
+    config.put("itemMetadata.contentLanguage.defaultValue", "en-US");
+    setupConfig.initConfig(config);
+
+    ItemMetadataPlan plan = ItemMetadataPlan.compile();
+    assertNotNull(plan);
+    Multimap<String, Object> values = ArrayListMultimap.create();
+    values.put("name", "Joe Smith");
+    values.put("modified", new Timestamp(1484661683400L));
+    Item expected = IndexingItemBuilder.fromConfiguration("id1")
+        .setValues(values)
+        .setItemType(ItemType.CONTENT_ITEM)
+        .build();
+    Item actual = plan.newBuilder("id1")
+        .setValues(values)
+        .setItemType(ItemType.CONTENT_ITEM)
+        .build();
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testCompile_noMetadata() {
+    setupConfig.initConfig(new Properties());
+
+    ItemMetadataPlan plan = ItemMetadataPlan.compile();
+    assertNotNull(plan);
+    assertEquals(
+        IndexingItemBuilder.fromConfiguration("id1").setItemType(ItemType.CONTENT_ITEM).build(),
+        plan.newBuilder("id1").setItemType(ItemType.CONTENT_ITEM).build());
+  }
+
+  @Test
+  public void testCompile_fieldAndDefaultValue_returnsNull() {
+    Properties config = new Properties();
+    config.put(IndexingItemBuilder.TITLE_FIELD, "name");
+    config.put("itemMetadata.title.defaultValue", "Untitled");
+    setupConfig.initConfig(config);
+
+    assertNull(ItemMetadataPlan.compile());
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/** Tests for the PollScheduler class. */
+public class PollSchedulerTest {
+
+  private final AtomicLong now = new AtomicLong(100000);
+  private final PollScheduler scheduler = new PollScheduler(5000, now::get);
+
+  @Test
+  public void testIsPollDue_initially() {
+    assertTrue(scheduler.isPollDue());
+  }
+
+  @Test
+  public void testRecordPoll_idleBacksOff() {
+    long[] expectedIntervals = {1000, 2000, 4000, 5000, 5000};
+    for (long expected : expectedIntervals) {
+      long start = now.get();
+      now.addAndGet(10);
+      scheduler.recordPoll(start, now.get(), 0, false);
+      assertEquals(expected, scheduler.getIntervalMillis());
+      assertEquals(10, scheduler.getLastLatencyMillis());
+      now.addAndGet(expected - 1);
+      assertFalse(scheduler.isPollDue());
+      now.addAndGet(1);
+      assertTrue(scheduler.isPollDue());
+    }
+  }
+
+  @Test
+  public void testRecordPoll_changesResetInterval() {
+    scheduler.recordPoll(now.get(), now.get(), 0, false);
+    now.addAndGet(1000);
+    scheduler.recordPoll(now.get(), now.get(), 0, false);
+    assertEquals(2000, scheduler.getIntervalMillis());
+
+    now.addAndGet(2000);
+    scheduler.recordPoll(now.get(), now.get(), 50, false);
+    assertEquals(0, scheduler.getIntervalMillis());
+    assertTrue(scheduler.isPollDue());
+    assertTrue(scheduler.getChangeRate() > 0);
+  }
+
+  @Test
+  public void testRecordPoll_hasMore() {
+    scheduler.recordPoll(now.get(), now.get(), 0, true);
+    assertEquals(0, scheduler.getIntervalMillis());
+    assertTrue(scheduler.isPollDue());
+  }
+}
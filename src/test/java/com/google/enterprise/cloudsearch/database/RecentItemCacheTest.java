@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/** Tests for the RecentItemCache class. */
+public class RecentItemCacheTest {
+  @Rule public ExpectedException thrown = ExpectedException.none();
+
+  @Test
+  public void testConstructor_zeroCapacity() {
+    thrown.expect(IllegalArgumentException.class);
+    new RecentItemCache(0);
+  }
+
+  @Test
+  public void testContains() {
+    RecentItemCache cache = new RecentItemCache(2);
+    cache.put(1, 10);
+    assertTrue(cache.contains(1, 10));
+    assertFalse(cache.contains(1, 11));
+    assertFalse(cache.contains(2, 10));
+
+    cache.put(1, 11);
+    assertTrue(cache.contains(1, 11));
+    assertFalse(cache.contains(1, 10));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testPut_evictsLeastRecentlyUsed() {
+    RecentItemCache cache = new RecentItemCache(3);
+    cache.put(1, 10);
+    cache.put(2, 20);
+    cache.put(3, 30);
+    cache.put(1, 10); // 2 is now the least recently used
+    cache.put(4, 40);
+    assertEquals(3, cache.size());
+    assertTrue(cache.contains(1, 10));
+    assertFalse(cache.contains(2, 20));
+    assertTrue(cache.contains(3, 30));
+    assertTrue(cache.contains(4, 40));
+  }
+
+  @Test
+  public void testPut_collidingIds() {
+    // These all have the same home slot, so eviction must keep the probe sequence intact.
+    RecentItemCache cache = new RecentItemCache(4);
+    long[] ids = {1L, 1L << 32, 2L << 32 | 3, 3L << 32 | 2, 5L << 32 | 4};
+    for (long id : ids) {
+      cache.put(id, id + 1);
+    }
+    assertFalse(cache.contains(ids[0], ids[0] + 1));
+    for (int i = 1; i < ids.length; i++) {
+      assertTrue(cache.contains(ids[i], ids[i] + 1));
+    }
+  }
+
+  @Test
+  public void testHashName() {
+    assertEquals(RecentItemCache.hashName("id1"), RecentItemCache.hashName("id1"));
+    assertFalse(RecentItemCache.hashName("id1") == RecentItemCache.hashName("id2"));
+  }
+}
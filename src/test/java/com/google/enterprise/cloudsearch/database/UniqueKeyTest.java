@@ -16,6 +16,8 @@
 package com.google.enterprise.cloudsearch.database;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
 import java.util.HashMap;
@@ -169,6 +171,26 @@ public class UniqueKeyTest {
         new KeyField.Builder().setValue("").setEncoded("").build());
   }
 
+  @Test
+  public void testNumericValues() {
+    Map<String, Object> keyValuePairs = new HashMap<>();
+    keyValuePairs.put("name", -42L);
+    keyValuePairs.put("id", 123);
+    keyValuePairs.put("type", "a_b");
+    String key = UniqueKey.makeUniqueId(Arrays.asList("name", "id", "type"), keyValuePairs);
+    assertEquals("-42/123/a__b", key);
+    assertEquals(Arrays.asList("-42", "123", "a_b"), UniqueKey.decodeUniqueId(key));
+  }
+
+  @Test
+  public void testHashUniqueId() {
+    String hash = UniqueKey.hashUniqueId("id1/Joe Smith");
+    assertEquals(22, hash.length());
+    assertTrue(hash, hash.matches("[A-Za-z0-9_-]+"));
+    assertEquals(hash, UniqueKey.hashUniqueId("id1/Joe Smith"));
+    assertNotEquals(hash, UniqueKey.hashUniqueId("id1/Joe Smith "));
+  }
+
   /**
    * Run a common test of building a temporary database partially defined by the passed arguments.
    *
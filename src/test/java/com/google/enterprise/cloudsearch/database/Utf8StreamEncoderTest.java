@@ -0,0 +1,73 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+
+import com.google.common.base.Strings;
+import java.io.StringReader;
+import org.junit.Test;
+
+/** Tests for the Utf8StreamEncoder class. */
+public class Utf8StreamEncoderTest {
+
+  private final Utf8StreamEncoder encoder = new Utf8StreamEncoder();
+
+  private void assertEncoding(String value, long lengthHint) throws Exception {
+    assertArrayEquals(value.getBytes(UTF_8),
+        encoder.encode(new StringReader(value), lengthHint));
+  }
+
+  @Test
+  public void encode_empty() throws Exception {
+    assertEncoding("", 0);
+  }
+
+  @Test
+  public void encode_ascii_exactHint() throws Exception {
+    assertEncoding("This is some clob content.", 26);
+  }
+
+  @Test
+  public void encode_ascii_noHint() throws Exception {
+    assertEncoding("This is some clob content.", -1);
+  }
+
+  @Test
+  public void encode_multiByte_exactHint() throws Exception {
+    assertEncoding("Ça coûte 10 € 😀", 16);
+  }
+
+  @Test
+  public void encode_unpairedSurrogate_replaced() throws Exception {
+    assertEncoding("abc\uD83Ddef", 7);
+  }
+
+  @Test
+  public void encode_largerThanChunks() throws Exception {
+    String value = Strings.repeat("été ", 3 * Utf8StreamEncoder.CHUNK_SIZE / 5);
+    assertEncoding(value, value.length());
+    assertEncoding(value, 10);
+    assertEncoding(value, 0);
+  }
+
+  @Test
+  public void encode_reusedEncoder() throws Exception {
+    assertEncoding("first €", 7);
+    assertEncoding("second", 6);
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2019 Google Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.enterprise.cloudsearch.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import java.text.MessageFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.Test;
+
+/** Tests for the ViewUrlTemplate class. */
+public class ViewUrlTemplateTest {
+
+  private static final List<String> COLUMNS = ImmutableList.of("id", "name");
+
+  /** A URL builder like the SDK's, which escapes the values of some of the columns. */
+  private static Function<Map<String, Object>, String> urlBuilder(String format,
+      Escaper nameEscaper) {
+    return values -> MessageFormat.format(format, values.get("id"),
+        nameEscaper.escape(String.valueOf(values.get("name"))));
+  }
+
+  @Test
+  public void testBuildUrl_escapedColumn() {
+    Function<Map<String, Object>, String> builder =
+        urlBuilder("http://anysite/{0}/category/{1}?id={0}", UrlEscapers.urlPathSegmentEscaper());
+    ViewUrlTemplate template = ViewUrlTemplate.compile(builder, COLUMNS);
+    assertNotNull(template);
+
+    Map<String, Object> values = ImmutableMap.of("id", "1#2#3", "name", "product 1/é");
+    assertEquals("http://anysite/1#2#3/category/product%201%2F%C3%A9?id=1#2#3",
+        template.buildUrl(values));
+    assertEquals(builder.apply(values), template.buildUrl(values));
+  }
+
+  @Test
+  public void testBuildUrl_formParameterColumn() {
+    Function<Map<String, Object>, String> builder =
+        urlBuilder("http://anysite/view?id={0}&name={1}", UrlEscapers.urlFormParameterEscaper());
+    ViewUrlTemplate template = ViewUrlTemplate.compile(builder, COLUMNS);
+    assertNotNull(template);
+
+    Map<String, Object> values = ImmutableMap.of("id", "A-123", "name", "Tom & Jerry");
+    assertEquals("http://anysite/view?id=A-123&name=Tom+%26+Jerry", template.buildUrl(values));
+  }
+
+  @Test
+  public void testBuildUrl_unknownEscaping() {
+    Escaper spaces = new Escaper() {
+      @Override
+      public String escape(String string) {
+        return string.replace(' ', '~');
+      }
+    };
+    Function<Map<String, Object>, String> builder = urlBuilder("http://anysite/{0}/{1}", spaces);
+    ViewUrlTemplate template = ViewUrlTemplate.compile(builder, COLUMNS);
+    assertNotNull(template);
+
+    // Values of the column with unknown escaping are only supported if they need no escaping.
+    assertEquals("http://anysite/A 1/product",
+        template.buildUrl(ImmutableMap.of("id", "A 1", "name", "product")));
+    assertNull(template.buildUrl(ImmutableMap.of("id", "A-123", "name", "product 1")));
+  }
+
+  @Test
+  public void testBuildUrl_numbersFormattedByBuilder() {
+    Function<Map<String, Object>, String> builder =
+        urlBuilder("http://anysite/{0}/{1}", UrlEscapers.urlPathSegmentEscaper());
+    ViewUrlTemplate template = ViewUrlTemplate.compile(builder, COLUMNS);
+    assertNotNull(template);
+
+    // MessageFormat groups the digits of numbers, so they are left to the URL builder.
+    assertNull(template.buildUrl(ImmutableMap.of("id", 1234567L, "name", "product")));
+    assertEquals("http://anysite/123/product",
+        template.buildUrl(ImmutableMap.of("id", "123", "name", "product")));
+  }
+}